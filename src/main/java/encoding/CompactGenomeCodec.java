@@ -0,0 +1,302 @@
+package encoding;
+
+import activations.ActivationType;
+import util.BinaryInput;
+import util.BinaryOutput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static util.VarInt.*;
+
+/**
+ * A compact binary encoding of a set of Genomes stored together, such as the Genomes of a population file. Most
+ * Genomes of a population share most of their structure, which is written once, in dictionaries preceding the Genomes:
+ *
+ *   - The link dictionary, the source and destination nodes of each link innovation. Genomes refer to links by id only.
+ *   - The base node dictionary, each distinct set of input, bias and output node ids. Genomes refer to theirs by index.
+ *
+ * Within a Genome, node and link ids are delta-encoded (each id as its signed difference with the previous one), which
+ * takes a single byte for ids in increasing order, and the enabled flag of a link is packed with its id. Weights are
+ * written as doubles, or as floats if floatWeights is set, which halves their size but loses precision.
+ *
+ * Dictionaries: floatWeights, linkCount, (linkId - previousLinkId, sourceId, destinationId)...,
+ *   baseCount, (inputCount, inputIds..., biasId + 1, outputCount, outputIds...)...
+ * Genome: id, fitness, adjustedFitness, spawnAmount, parentSpeciesId + 1, baseIndex, outputActivations...,
+ *   hiddenCount, (hiddenIdDelta, activation)..., linkCount, (linkIdDelta and enabled, weight)...
+ *
+ * @author Acemad
+ */
+public class CompactGenomeCodec {
+
+    private final boolean floatWeights;
+
+    // Link dictionary: source and destination node of each link id, in increasing order of id. When decoding, the
+    // nodes are looked up in arrays indexed by link id instead
+    private final Map<Integer, int[]> links = new TreeMap<>();
+    private int[] linkSources;
+    private int[] linkDestinations;
+
+    // Base node dictionary
+    private final List<BaseNodes> bases = new ArrayList<>();
+    private final Map<BaseNodes, Integer> baseIndexes = new HashMap<>();
+
+    /**
+     * The input, bias and output node ids of a Genome
+     */
+    private static class BaseNodes {
+        private final int[] inputIds;
+        private final int biasId;                           // -1 if no bias
+        private final int[] outputIds;
+
+        private BaseNodes(int[] inputIds, int biasId, int[] outputIds) {
+            this.inputIds = inputIds;
+            this.biasId = biasId;
+            this.outputIds = outputIds;
+        }
+
+        private static BaseNodes of(Genome genome) {
+            int[] inputIds = genome.getInputNodeGenes().stream().mapToInt(NodeGene::getId).toArray();
+            int[] outputIds = genome.getOutputNodeGenes().stream().mapToInt(NodeGene::getId).toArray();
+            NodeGene biasNode = genome.getBiasNodeGene();
+            return new BaseNodes(inputIds, biasNode != null ? biasNode.getId() : -1, outputIds);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof BaseNodes)) return false;
+            BaseNodes other = (BaseNodes) obj;
+            return biasId == other.biasId && Arrays.equals(inputIds, other.inputIds) &&
+                    Arrays.equals(outputIds, other.outputIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(inputIds) + biasId) + Arrays.hashCode(outputIds);
+        }
+    }
+
+    private CompactGenomeCodec(boolean floatWeights) {
+        this.floatWeights = floatWeights;
+    }
+
+    /**
+     * Creates a codec whose dictionaries cover the given Genomes, for encoding them
+     *
+     * @param genomes The Genomes to be encoded
+     * @param floatWeights Whether to write weights as floats rather than doubles
+     * @return The codec
+     */
+    public static CompactGenomeCodec forGenomes(Collection<Genome> genomes, boolean floatWeights) {
+
+        CompactGenomeCodec codec = new CompactGenomeCodec(floatWeights);
+        for (Genome genome : genomes) {
+            for (LinkGene linkGene : genome.getLinkGenes()) {
+                int[] nodes = codec.links.putIfAbsent(linkGene.getId(),
+                        new int[] {linkGene.getSourceNodeId(), linkGene.getDestinationNodeId()});
+                // Innovation ids identify links, the same id always stands for the same link
+                if (nodes != null && (nodes[0] != linkGene.getSourceNodeId() ||
+                        nodes[1] != linkGene.getDestinationNodeId()))
+                    throw new IllegalArgumentException("Link " + linkGene.getId() + " has different nodes");
+            }
+            BaseNodes base = BaseNodes.of(genome);
+            if (codec.baseIndexes.putIfAbsent(base, codec.bases.size()) == null)
+                codec.bases.add(base);
+        }
+        return codec;
+    }
+
+    /**
+     * Writes the dictionaries, which must precede the encoded Genomes
+     *
+     * @param out The destination
+     * @throws IOException If writing fails
+     */
+    public void writeDictionaries(BinaryOutput out) throws IOException {
+
+        out.putBoolean(floatWeights);
+
+        out.putVarInt(links.size());
+        int previousId = 0;
+        for (Map.Entry<Integer, int[]> link : links.entrySet()) {
+            out.putVarInt(link.getKey() - previousId);
+            out.putVarInt(link.getValue()[0]);
+            out.putVarInt(link.getValue()[1]);
+            previousId = link.getKey();
+        }
+
+        out.putVarInt(bases.size());
+        for (BaseNodes base : bases) {
+            writeIds(out, base.inputIds);
+            out.putVarInt(base.biasId + 1);
+            writeIds(out, base.outputIds);
+        }
+    }
+
+    /**
+     * Reads the dictionaries written by writeDictionaries, and returns a codec for decoding the Genomes that follow
+     *
+     * @param in The source
+     * @return The codec
+     * @throws IOException If reading fails
+     */
+    public static CompactGenomeCodec readDictionaries(BinaryInput in) throws IOException {
+
+        CompactGenomeCodec codec = new CompactGenomeCodec(in.getBoolean());
+
+        int linkCount = in.getVarInt();
+        int[] ids = new int[linkCount], sources = new int[linkCount], destinations = new int[linkCount];
+        for (int i = 0, id = 0; i < linkCount; i++) {
+            id += in.getVarInt();
+            ids[i] = id;
+            sources[i] = in.getVarInt();
+            destinations[i] = in.getVarInt();
+        }
+        // Ids are in increasing order, the last one is the largest
+        codec.linkSources = new int[linkCount > 0 ? ids[linkCount - 1] + 1 : 0];
+        codec.linkDestinations = new int[codec.linkSources.length];
+        for (int i = 0; i < linkCount; i++) {
+            codec.linkSources[ids[i]] = sources[i];
+            codec.linkDestinations[ids[i]] = destinations[i];
+        }
+
+        int baseCount = in.getVarInt();
+        for (int i = 0; i < baseCount; i++) {
+            int[] inputIds = readIds(in);
+            int biasId = in.getVarInt() - 1;
+            codec.bases.add(new BaseNodes(inputIds, biasId, readIds(in)));
+        }
+        return codec;
+    }
+
+    private static void writeIds(BinaryOutput out, int[] ids) throws IOException {
+        out.putVarInt(ids.length);
+        for (int id : ids) out.putVarInt(id);
+    }
+
+    private static int[] readIds(BinaryInput in) throws IOException {
+        int[] ids = new int[in.getVarInt()];
+        for (int i = 0; i < ids.length; i++) ids[i] = in.getVarInt();
+        return ids;
+    }
+
+    /**
+     * Encodes a Genome covered by the dictionaries of this codec
+     *
+     * @param genome The Genome to encode
+     * @return The encoded Genome
+     */
+    public byte[] encode(Genome genome) {
+
+        List<NodeGene> outputNodes = genome.getOutputNodeGenes();
+        List<NodeGene> hiddenNodes = genome.getHiddenNodeGenes();
+        List<LinkGene> linkGenes = genome.getLinkGenes();
+        ByteBuffer buffer = ByteBuffer.allocate(5 * MAX_INT_BYTES + 3 * Double.BYTES + outputNodes.size() +
+                hiddenNodes.size() * (MAX_INT_BYTES + 1) + linkGenes.size() * (MAX_INT_BYTES + Double.BYTES));
+
+        putVarInt(buffer, genome.id);
+        buffer.putDouble(genome.fitness);
+        buffer.putDouble(genome.adjustedFitness);
+        buffer.putDouble(genome.spawnAmount);
+        putVarInt(buffer, genome.parentSpeciesId + 1);
+
+        Integer baseIndex = baseIndexes.get(BaseNodes.of(genome));
+        if (baseIndex == null) throw new IllegalArgumentException("Genome " + genome.id + " not covered by the codec");
+        putVarInt(buffer, baseIndex);
+        for (NodeGene outputNode : outputNodes) buffer.put(activationCode(outputNode));
+
+        putVarInt(buffer, hiddenNodes.size());
+        int previousId = 0;
+        for (NodeGene hiddenNode : hiddenNodes) {
+            putSignedVarInt(buffer, hiddenNode.getId() - previousId);
+            buffer.put(activationCode(hiddenNode));
+            previousId = hiddenNode.getId();
+        }
+
+        putVarInt(buffer, linkGenes.size());
+        previousId = 0;
+        for (LinkGene linkGene : linkGenes) {
+            if (!links.containsKey(linkGene.getId()))
+                throw new IllegalArgumentException("Link " + linkGene.getId() + " not covered by the codec");
+            putVarInt(buffer, zigzag(linkGene.getId() - previousId) << 1 | (linkGene.isEnabled() ? 1 : 0));
+            if (floatWeights) buffer.putFloat((float) linkGene.getWeight());
+            else buffer.putDouble(linkGene.getWeight());
+            previousId = linkGene.getId();
+        }
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Reads a Genome from the current position of the buffer, and advances the position past its encoding. Only the
+     * id and the fitness values are decoded, the genes are decoded on first access. The decoded Genome refers to the
+     * buffer until then, the content of the buffer must not change. The codec must come from readDictionaries
+     *
+     * @param buffer The source buffer
+     * @param size The size of the encoding
+     * @return The decoded Genome, whose genes are yet to be decoded
+     */
+    public Genome decodeLazily(ByteBuffer buffer, int size) {
+
+        int end = buffer.position() + size;
+        int id = getVarInt(buffer);
+        double fitness = buffer.getDouble();
+        double adjustedFitness = buffer.getDouble();
+        double spawnAmount = buffer.getDouble();
+        int parentSpeciesId = getVarInt(buffer) - 1;
+
+        ByteBuffer genes = buffer.slice(buffer.position(), end - buffer.position());
+        Genome genome = new Genome(id, lazyGenome -> decodeGenes(lazyGenome, genes.duplicate()));
+        genome.fitness = fitness;
+        genome.adjustedFitness = adjustedFitness;
+        genome.spawnAmount = spawnAmount;
+        genome.parentSpeciesId = parentSpeciesId;
+        buffer.position(end);
+        return genome;
+    }
+
+    /**
+     * Decodes the genes of the Genome, from the base index on
+     */
+    private void decodeGenes(Genome genome, ByteBuffer buffer) {
+
+        BaseNodes base = bases.get(getVarInt(buffer));
+        List<NodeGene> inputNodes = new ArrayList<>(base.inputIds.length);
+        for (int inputId : base.inputIds) inputNodes.add(new NodeGene(inputId, NodeType.INPUT));
+        NodeGene biasNode = base.biasId >= 0 ? new NodeGene(base.biasId, NodeType.BIAS) : null;
+        List<NodeGene> outputNodes = new ArrayList<>(base.outputIds.length);
+        for (int outputId : base.outputIds)
+            outputNodes.add(new NodeGene(outputId, NodeType.OUTPUT, activationType(buffer.get())));
+
+        int hiddenCount = getVarInt(buffer);
+        List<NodeGene> hiddenNodes = new ArrayList<>(hiddenCount);
+        int id = 0;
+        for (int i = 0; i < hiddenCount; i++) {
+            id += getSignedVarInt(buffer);
+            hiddenNodes.add(new NodeGene(id, NodeType.HIDDEN, activationType(buffer.get())));
+        }
+
+        int linkCount = getVarInt(buffer);
+        List<LinkGene> linkGenes = new ArrayList<>(linkCount);
+        id = 0;
+        for (int i = 0; i < linkCount; i++) {
+            int packed = getVarInt(buffer);
+            id += unzigzag(packed >>> 1);
+            double weight = floatWeights ? buffer.getFloat() : buffer.getDouble();
+            linkGenes.add(new LinkGene(id, linkSources[id], linkDestinations[id], weight, (packed & 1) != 0));
+        }
+
+        genome.setGenes(inputNodes, biasNode, hiddenNodes, outputNodes, linkGenes);
+    }
+
+    // Activation types are stored as ordinal + 1, 0 stands for none, as in GenomeCodec
+    private static byte activationCode(NodeGene node) {
+        return (byte) (node.getActivationType() != null ? node.getActivationType().ordinal() + 1 : 0);
+    }
+
+    private static ActivationType activationType(int code) {
+        return code > 0 ? ActivationType.values()[code - 1] : null;
+    }
+}
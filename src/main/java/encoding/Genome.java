@@ -10,6 +10,7 @@ import util.Visualizer;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * The Genome class, implements the NEAT genome as described in Stanley's paper.
@@ -36,6 +37,11 @@ public class Genome implements Comparable<Genome>, Serializable {
     double fitness;
     double adjustedFitness;
     double spawnAmount; // The number of offspring this Genome should spawn
+    int parentSpeciesId = -1; // The species this Genome was spawned by, -1 if unknown
+
+    // Decodes the genes of a Genome read lazily (see CompactGenomeCodec.decodeLazily) on first access to the genes, null once
+    // the genes are decoded
+    private transient volatile Consumer<Genome> geneDecoder;
 
     /**
      * Constructs a new Genome using the parameters given.
@@ -82,6 +88,60 @@ public class Genome implements Comparable<Genome>, Serializable {
         id = innovationDB.getNewGenomeId();
     }
 
+    /**
+     * Creates a Genome without any gene, as read back from a binary encoding (see GenomeCodec), the genes being set
+     * by setGenes, or decoded lazily
+     *
+     * @param id The id of the Genome
+     * @param geneDecoder Sets the genes of the Genome (see setGenes) on first access to the genes. Null if the genes
+     *                    are set right away
+     */
+    Genome(int id, Consumer<Genome> geneDecoder) {
+        this.id = id;
+        this.geneDecoder = geneDecoder;
+    }
+
+    /**
+     * Fills the genes of a Genome created without any gene. The genes are used as is, without copying
+     */
+    void setGenes(List<NodeGene> inputNodes, NodeGene biasNode, List<NodeGene> hiddenNodes,
+                  List<NodeGene> outputNodes, List<LinkGene> links) {
+
+        inputNodeGenes.addAll(inputNodes);
+        biasNodeGene = biasNode;
+        hiddenNodeGenes.addAll(hiddenNodes);
+        outputNodeGenes.addAll(outputNodes);
+
+        // Same node order as the copy constructor
+        nodeGenes.addAll(inputNodeGenes);
+        if (biasNodeGene != null) nodeGenes.add(biasNodeGene);
+        nodeGenes.addAll(hiddenNodeGenes);
+        nodeGenes.addAll(outputNodeGenes);
+        for (NodeGene nodeGene : nodeGenes) nodeGenesIds.add(nodeGene.getId());
+
+        linkGenes.addAll(links);
+    }
+
+    /**
+     * Decodes the genes of a Genome read lazily, if not done yet. Safe to call from concurrent threads, only one of
+     * them decodes the genes.
+     */
+    void materialize() {
+        if (geneDecoder == null) return;
+        synchronized (this) {
+            if (geneDecoder == null) return;
+            geneDecoder.accept(this);
+            geneDecoder = null;
+        }
+    }
+
+    /**
+     * Whether the genes of this Genome are decoded, false if they are still waiting for their first access
+     */
+    public boolean isMaterialized() {
+        return geneDecoder == null;
+    }
+
     /**
      * Using the basic structure data in the innovations DB, initialize the input, bias, and output NodeGenes.
      * @param innovationDB The innovations DB
@@ -144,6 +204,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public Genome(Genome genome, InnovationDB innovationDB) {
 
+        genome.materialize();
         // Copy primitives
         this.fitness = genome.fitness;
         this.adjustedFitness = genome.adjustedFitness;
@@ -193,6 +254,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public Set<Link> generatePossibleLinks(NEATConfig config) {
 
+        materialize();
         // The set of possible links. A link is represented by a pair of integers (source -> destination)
         Set<Link> possibleLinks = new HashSet<>();
 
@@ -377,6 +439,8 @@ public class Genome implements Comparable<Genome>, Serializable {
     public boolean isCompatibleWith(Genome genome, double unmatchedCoeff, double weightDiffCoeff,
                                     double activationDiffCoeff, double compatibilityThreshold) {
 
+        materialize();
+        genome.materialize();
         // Assemble all LinkGenes (for both Genomes) in a single set
         Set<LinkGene> linkGenes = new HashSet<>(this.getLinkGenes());
         linkGenes.addAll(genome.getLinkGenes());
@@ -433,12 +497,54 @@ public class Genome implements Comparable<Genome>, Serializable {
         return score < compatibilityThreshold;
     }
 
+    /**
+     * Checks whether this Genome is an exact copy of the given Genome: the same nodes with the same activation
+     * functions, in any order, and the same links with the same weights and status, in the same order. A Genome is
+     * identical to the copies made of it with the copy constructor, which lists hidden nodes before output nodes.
+     *
+     * @param genome The Genome to compare with
+     * @return true if both Genomes are identical
+     */
+    public boolean isIdenticalTo(Genome genome) {
+
+        materialize();
+        genome.materialize();
+        if (nodeGenes.size() != genome.nodeGenes.size() || linkGenes.size() != genome.linkGenes.size())
+            return false;
+
+        for (int i = 0; i < linkGenes.size(); i++) {
+            LinkGene linkGene = linkGenes.get(i), otherLinkGene = genome.linkGenes.get(i);
+            if (linkGene.getId() != otherLinkGene.getId() || linkGene.getWeight() != otherLinkGene.getWeight() ||
+                    linkGene.isEnabled() != otherLinkGene.isEnabled())
+                return false;
+        }
+
+        // Nodes are compared in order until the orders differ, then by id
+        Map<Integer, NodeGene> otherNodeGenes = null;
+        for (int i = 0; i < nodeGenes.size(); i++) {
+            NodeGene nodeGene = nodeGenes.get(i), otherNodeGene = genome.nodeGenes.get(i);
+            if (nodeGene.getId() != otherNodeGene.getId()) {
+                if (otherNodeGenes == null) {
+                    otherNodeGenes = new HashMap<>();
+                    for (NodeGene node : genome.nodeGenes) otherNodeGenes.put(node.getId(), node);
+                }
+                otherNodeGene = otherNodeGenes.get(nodeGene.getId());
+                if (otherNodeGene == null) return false;
+            }
+            if (nodeGene.getActivationType() != otherNodeGene.getActivationType())
+                return false;
+        }
+
+        return true;
+    }
+
     /**
      * Add a new NodeGene to the Genome. The new NodeGene represents a hidden node and is added to the list of hidden
      * nodes.
      * @param nodeGene The new NodeGene
      */
     public void addNewHiddenNode(NodeGene nodeGene) {
+        materialize();
         if (nodeGene != null) {
             hiddenNodeGenes.add(nodeGene);
             nodeGenes.add(nodeGene);
@@ -454,6 +560,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @param nodeGene The node gene to add
      */
     public void addMissingNode(NodeGene nodeGene) {
+        materialize();
         // First, check if the genome does not contain a node with the same id
         if (!nodeGenesIds.contains(nodeGene.getId())) {
             nodeGenes.add(nodeGene); // Add to the principal list
@@ -473,6 +580,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @param linkGene The link to add
      */
     public void addNewLink(LinkGene linkGene) {
+        materialize();
         if (linkGene != null) linkGenes.add(linkGene);
     }
 
@@ -482,6 +590,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public Set<Integer> getLinkGeneIds() {
 
+        materialize();
         // linkGenes.stream().map(LinkGene::getId).collect(Collectors.toSet());
 
         Set<Integer> linkGeneIds = new HashSet<>();
@@ -495,6 +604,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return A Set containing the NodeGenes Ids
      */
     public Set<Integer> getNodeGenesIds() {
+        materialize();
         /*Set<Integer> nodeGeneIds = new HashSet<>();
         for (NodeGene nodeGene : nodeGenes)
             nodeGeneIds.add(nodeGene.getId());*/
@@ -506,6 +616,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return A List of disabled LinkGenes in the Genome
      */
     public List<LinkGene> getDisabledLinkGenes() {
+        materialize();
         List<LinkGene> disabledLinkGenes = new ArrayList<>();
         for (LinkGene linkGene : linkGenes)
             if (!linkGene.isEnabled()) disabledLinkGenes.add(linkGene);
@@ -517,6 +628,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return A List of enabled LinkGenes in the Genome
      */
     public List<LinkGene> getEnabledLinkGenes() {
+        materialize();
         List<LinkGene> enabledLinkGenes = new ArrayList<>();
         for (LinkGene linkGene : linkGenes)
             if (linkGene.isEnabled()) enabledLinkGenes.add(linkGene);
@@ -528,6 +640,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return The number of possible links.
      */
     public int calculatePossibleLinks() {
+        materialize();
         return numberOfPossibleLinks(inputNodeGenes.size(), outputNodeGenes.size(), hiddenNodeGenes.size(),
                 biasNodeGene != null);
     }
@@ -623,6 +736,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public void removeHiddenNode(NodeGene nodeGene, boolean removeRelatedLinks) {
 
+        materialize();
         // First, check existence
         if (hiddenNodeGenes.contains(nodeGene)) {
             nodeGenes.remove(nodeGene);
@@ -648,6 +762,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public int fixDanglingNodes(InnovationDB innovationDB, double removeProbability) {
 
+        materialize();
         // Lists to hold dangling nodes and their types
         List<NodeGene> danglingNodes = new ArrayList<>();
         List<NodeGene> nonSourceNodes = new ArrayList<>(); // Nodes that are not sources to any other nodes
@@ -738,6 +853,7 @@ public class Genome implements Comparable<Genome>, Serializable {
 
     public void updateNodeLevelsFrom(NodeGene nodeGene) {
 
+        materialize();
         Deque<List<NodeGene>> nodeQueue = new ArrayDeque<>();
         nodeQueue.addLast(inputNodeGenes);
 
@@ -777,6 +893,24 @@ public class Genome implements Comparable<Genome>, Serializable {
         ObjectSaver.saveObjectToFile(this, filePath);
     }
 
+    /**
+     * Save the Genome to a file, optionally compressed. readFromFile reads both forms
+     * @param filePath Path of the file to save to
+     * @param compress Whether to compress the file
+     */
+    public void saveToFile(String filePath, boolean compress) {
+        ObjectSaver.saveObjectToFile(this, filePath, compress);
+    }
+
+    /**
+     * The genes of a Genome read lazily are decoded before being serialized
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        materialize();
+        out.defaultWriteObject();
+    }
+
     /**
      * Loads a Genome instance from a file
      * @param filePath Path of the Genome file
@@ -792,6 +926,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return A NodeGene of the same id
      */
     public NodeGene getNodeGeneById(int nodeId) {
+        materialize();
         if (nodeGenesIds.contains(nodeId)) {
             for (NodeGene nodeGene : nodeGenes)
                 if (nodeGene.getId() == nodeId)
@@ -809,6 +944,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public List<NodeGene> getNextNodesConnectedTo(NodeGene nodeGene) {
 
+        materialize();
         List<NodeGene> nextNodes = new ArrayList<>();
 
         for (LinkGene linkGene : linkGenes) {
@@ -828,6 +964,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public List<NodeGene> getPreviousNodesConnectedTo(NodeGene nodeGene) {
 
+        materialize();
         List<NodeGene> previousNodes = new ArrayList<>();
 
         for (LinkGene linkGene : linkGenes) {
@@ -847,6 +984,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public List<LinkGene> getOutgoingLinksFrom(NodeGene nodeGene, boolean enabledOnly) {
 
+        materialize();
         List<LinkGene> outgoingLinks = new ArrayList<>();
 
         for (LinkGene linkGene : linkGenes)
@@ -868,6 +1006,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public List<LinkGene> getIncomingLinksTo(NodeGene nodeGene, boolean enabledOnly) {
 
+        materialize();
         List<LinkGene> incomingLinks = new ArrayList<>();
 
         for (LinkGene linkGene : linkGenes)
@@ -889,6 +1028,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      */
     public LinkGene getLinkGeneFromLink(Link link) {
 
+        materialize();
         for (LinkGene linkGene : linkGenes) {
             if (linkGene.getSourceNodeId() == link.getSource()
                     && linkGene.getDestinationNodeId() == link.getDestination())
@@ -904,11 +1044,13 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return Integer value representing complexity
      */
     public int complexity() {
+        materialize();
         return linkGenes.size();
     }
 
     @Override
     public String toString() {
+        materialize();
         nodeGenes.sort(null);
         linkGenes.sort(null);
         return "Genome " + id + ", Fitness: " + fitness + ", AdjustedFitness: " + adjustedFitness + " {\n" +
@@ -936,6 +1078,7 @@ public class Genome implements Comparable<Genome>, Serializable {
      * @return A concise String representation of this Genome
      */
     public String toConciseString() {
+        materialize();
         nodeGenes.sort(null);
         linkGenes.sort(null);
         StringBuilder builder = new StringBuilder();
@@ -989,11 +1132,14 @@ public class Genome implements Comparable<Genome>, Serializable {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Genome genome = (Genome) obj;
+        materialize();
+        genome.materialize();
         return nodeGenes.equals(genome.nodeGenes) && linkGenes.equals(genome.linkGenes);
     }
 
     @Override
     public int hashCode() {
+        materialize();
         return Objects.hash(nodeGenes, linkGenes);
     }
 
@@ -1005,26 +1151,32 @@ public class Genome implements Comparable<Genome>, Serializable {
     }
 
     public List<NodeGene> getNodeGenes() {
+        materialize();
         return nodeGenes;
     }
 
     public List<LinkGene> getLinkGenes() {
+        materialize();
         return linkGenes;
     }
 
     public List<NodeGene> getInputNodeGenes() {
+        materialize();
         return inputNodeGenes;
     }
 
     public List<NodeGene> getHiddenNodeGenes() {
+        materialize();
         return hiddenNodeGenes;
     }
 
     public List<NodeGene> getOutputNodeGenes() {
+        materialize();
         return outputNodeGenes;
     }
 
     public NodeGene getBiasNodeGene() {
+        materialize();
         return biasNodeGene;
     }
 
@@ -1056,4 +1208,12 @@ public class Genome implements Comparable<Genome>, Serializable {
         this.spawnAmount = spawnAmount;
     }
 
+    public int getParentSpeciesId() {
+        return parentSpeciesId;
+    }
+
+    public void setParentSpeciesId(int parentSpeciesId) {
+        this.parentSpeciesId = parentSpeciesId;
+    }
+
 }
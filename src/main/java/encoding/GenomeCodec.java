@@ -0,0 +1,170 @@
+package encoding;
+
+import activations.ActivationType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static util.VarInt.*;
+
+/**
+ * A flat binary encoding of Genomes, much more compact and faster to produce than Java serialization: ids and counts
+ * are written as variable length ints, weights and fitness values as raw doubles, and activation functions by the
+ * ordinal of their ActivationType. Layout:
+ *
+ *   id, fitness, adjustedFitness, spawnAmount, parentSpeciesId + 1,
+ *   inputCount, inputIds..., biasId + 1 (0 if no bias),
+ *   hiddenCount, (hiddenId, activation)..., outputCount, (outputId, activation)...,
+ *   linkCount, (linkId, sourceId, destinationId, weight, enabled)...
+ *
+ * The encoding can be written to and read from any ByteBuffer, including memory mapped files shared between processes.
+ * Genomes can also be read lazily: only the leading values are decoded, the genes being decoded from the buffer on
+ * first access, which makes reading a large population from a mapped file nearly free.
+ *
+ * @author Acemad
+ */
+public class GenomeCodec {
+
+    /**
+     * Returns the exact number of bytes taken by the encoding of the given Genome
+     *
+     * @param genome The Genome to encode
+     * @return The size of its encoding in bytes
+     */
+    public static int encodedSize(Genome genome) {
+        int size = sizeOf(genome.id) + 3 * Double.BYTES + sizeOf(genome.parentSpeciesId + 1);
+
+        size += sizeOf(genome.getInputNodeGenes().size());
+        for (NodeGene inputNode : genome.getInputNodeGenes()) size += sizeOf(inputNode.getId());
+        size += sizeOf(genome.getBiasNodeGene() != null ? genome.getBiasNodeGene().getId() + 1 : 0);
+
+        size += sizeOf(genome.getHiddenNodeGenes().size()) + sizeOf(genome.getOutputNodeGenes().size());
+        for (NodeGene hiddenNode : genome.getHiddenNodeGenes()) size += sizeOf(hiddenNode.getId()) + 1;
+        for (NodeGene outputNode : genome.getOutputNodeGenes()) size += sizeOf(outputNode.getId()) + 1;
+
+        size += sizeOf(genome.getLinkGenes().size());
+        for (LinkGene linkGene : genome.getLinkGenes())
+            size += sizeOf(linkGene.getId()) + sizeOf(linkGene.getSourceNodeId()) +
+                    sizeOf(linkGene.getDestinationNodeId()) + Double.BYTES + 1;
+
+        return size;
+    }
+
+    /**
+     * Writes the encoding of the Genome at the current position of the buffer, and advances the position
+     *
+     * @param genome The Genome to encode
+     * @param buffer The destination buffer, must have at least encodedSize(genome) bytes remaining
+     */
+    public static void encode(Genome genome, ByteBuffer buffer) {
+
+        putVarInt(buffer, genome.id);
+        buffer.putDouble(genome.fitness);
+        buffer.putDouble(genome.adjustedFitness);
+        buffer.putDouble(genome.spawnAmount);
+        putVarInt(buffer, genome.parentSpeciesId + 1);
+
+        putVarInt(buffer, genome.getInputNodeGenes().size());
+        for (NodeGene inputNode : genome.getInputNodeGenes()) putVarInt(buffer, inputNode.getId());
+        putVarInt(buffer, genome.getBiasNodeGene() != null ? genome.getBiasNodeGene().getId() + 1 : 0);
+
+        putNodes(buffer, genome.getHiddenNodeGenes());
+        putNodes(buffer, genome.getOutputNodeGenes());
+
+        putVarInt(buffer, genome.getLinkGenes().size());
+        for (LinkGene linkGene : genome.getLinkGenes()) {
+            putVarInt(buffer, linkGene.getId());
+            putVarInt(buffer, linkGene.getSourceNodeId());
+            putVarInt(buffer, linkGene.getDestinationNodeId());
+            buffer.putDouble(linkGene.getWeight());
+            buffer.put((byte) (linkGene.isEnabled() ? 1 : 0));
+        }
+    }
+
+    /**
+     * Encodes the Genome into a new byte array
+     *
+     * @param genome The Genome to encode
+     * @return The encoded Genome
+     */
+    public static byte[] encode(Genome genome) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(genome));
+        encode(genome, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Reads a Genome from the current position of the buffer, and advances the position past its encoding. The
+     * decoded Genome keeps its original id.
+     *
+     * @param buffer The source buffer
+     * @return The decoded Genome
+     */
+    public static Genome decode(ByteBuffer buffer) {
+        Genome genome = new Genome(getVarInt(buffer), null);
+        genome.fitness = buffer.getDouble();
+        genome.adjustedFitness = buffer.getDouble();
+        genome.spawnAmount = buffer.getDouble();
+        genome.parentSpeciesId = getVarInt(buffer) - 1;
+        decodeGenes(genome, buffer);
+        return genome;
+    }
+
+    /**
+     * Decodes the genes of the Genome from the current position of the buffer, right after the parent species
+     *
+     * @param genome The Genome receiving the genes, without any gene
+     * @param buffer The source buffer
+     */
+    static void decodeGenes(Genome genome, ByteBuffer buffer) {
+
+        int inputCount = getVarInt(buffer);
+        List<NodeGene> inputNodes = new ArrayList<>(inputCount);
+        for (int i = 0; i < inputCount; i++)
+            inputNodes.add(new NodeGene(getVarInt(buffer), NodeType.INPUT));
+        int biasId = getVarInt(buffer) - 1;
+        NodeGene biasNode = biasId >= 0 ? new NodeGene(biasId, NodeType.BIAS) : null;
+
+        List<NodeGene> hiddenNodes = getNodes(buffer, NodeType.HIDDEN);
+        List<NodeGene> outputNodes = getNodes(buffer, NodeType.OUTPUT);
+
+        int linkCount = getVarInt(buffer);
+        List<LinkGene> links = new ArrayList<>(linkCount);
+        for (int i = 0; i < linkCount; i++)
+            links.add(new LinkGene(getVarInt(buffer), getVarInt(buffer), getVarInt(buffer), buffer.getDouble(),
+                    buffer.get() != 0));
+
+        genome.setGenes(inputNodes, biasNode, hiddenNodes, outputNodes, links);
+    }
+
+    /**
+     * Decodes a Genome from a byte array produced by encode(Genome)
+     *
+     * @param bytes The encoded Genome
+     * @return The decoded Genome
+     */
+    public static Genome decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    private static void putNodes(ByteBuffer buffer, List<NodeGene> nodes) {
+        putVarInt(buffer, nodes.size());
+        for (NodeGene node : nodes) {
+            putVarInt(buffer, node.getId());
+            // Activation types are stored as ordinal + 1, 0 stands for none
+            buffer.put((byte) (node.getActivationType() != null ? node.getActivationType().ordinal() + 1 : 0));
+        }
+    }
+
+    private static List<NodeGene> getNodes(ByteBuffer buffer, NodeType type) {
+        int count = getVarInt(buffer);
+        List<NodeGene> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = getVarInt(buffer);
+            int activation = buffer.get();
+            nodes.add(new NodeGene(id, type, activation > 0 ? ActivationType.values()[activation - 1] : null));
+        }
+        return nodes;
+    }
+}
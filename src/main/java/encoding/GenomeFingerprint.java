@@ -0,0 +1,147 @@
+package encoding;
+
+/**
+ * A compact, immutable, view of a Genome used for fast compatibility tests. The link genes of the Genome are encoded as
+ * a bitset over their innovation ids, with the weights stored in id order, and likewise for the hidden and output nodes
+ * with their activation types. The number of unmatched links between two Genomes is then the population count of the
+ * XOR of their bitsets, computed 64 links at a time, and weight differences are only computed over the matching links
+ * given by the AND of the bitsets, where the rank of a bit gives the position of its weight.
+ *
+ * The compatibility decision is the same as Genome.isCompatibleWith, only the order in which weight differences are
+ * summed may differ, hence the score may differ by a rounding error.
+ *
+ * @author Acemad
+ */
+public class GenomeFingerprint {
+
+    private final long[] linkBits;
+    private final double[] weights;          // Link weights, ordered by link id
+    private final long[] nodeBits;
+    private final byte[] activations;        // Activation type ordinals of hidden and output nodes, ordered by node id
+
+    /**
+     * Builds the fingerprint of the given Genome
+     * @param genome The Genome to fingerprint
+     */
+    public GenomeFingerprint(Genome genome) {
+
+        int maxLinkId = 0;
+        for (LinkGene linkGene : genome.getLinkGenes()) maxLinkId = Math.max(maxLinkId, linkGene.getId());
+        linkBits = new long[(maxLinkId >> 6) + 1];
+        for (LinkGene linkGene : genome.getLinkGenes()) linkBits[linkGene.getId() >> 6] |= 1L << linkGene.getId();
+
+        // Place each weight at the rank of its link's bit
+        weights = new double[genome.getLinkGenes().size()];
+        for (LinkGene linkGene : genome.getLinkGenes())
+            weights[rank(linkBits, linkGene.getId())] = linkGene.getWeight();
+
+        // Input and bias nodes are excluded from the activation difference
+        int maxNodeId = 0;
+        for (NodeGene nodeGene : genome.getNodeGenes())
+            if (nodeGene.getType() == NodeType.HIDDEN || nodeGene.getType() == NodeType.OUTPUT)
+                maxNodeId = Math.max(maxNodeId, nodeGene.getId());
+        nodeBits = new long[(maxNodeId >> 6) + 1];
+        int nodeCount = 0;
+        for (NodeGene nodeGene : genome.getNodeGenes())
+            if (nodeGene.getType() == NodeType.HIDDEN || nodeGene.getType() == NodeType.OUTPUT) {
+                nodeBits[nodeGene.getId() >> 6] |= 1L << nodeGene.getId();
+                nodeCount++;
+            }
+
+        activations = new byte[nodeCount];
+        for (NodeGene nodeGene : genome.getNodeGenes())
+            if (nodeGene.getType() == NodeType.HIDDEN || nodeGene.getType() == NodeType.OUTPUT)
+                activations[rank(nodeBits, nodeGene.getId())] = (byte) nodeGene.getActivationType().ordinal();
+    }
+
+    /**
+     * Returns the number of set bits preceding the given bit
+     */
+    private static int rank(long[] bits, int bit) {
+        int rank = 0;
+        for (int word = 0; word < bit >> 6; word++) rank += Long.bitCount(bits[word]);
+        return rank + Long.bitCount(bits[bit >> 6] & ((1L << bit) - 1));
+    }
+
+    /**
+     * Returns the number of links present in only one of the two Genomes. Being the size of the symmetric difference
+     * of their link sets, it's a distance: it satisfies the triangle inequality.
+     *
+     * @param other The fingerprint of the other Genome
+     * @return The number of unmatched links
+     */
+    public int unmatchedLinks(GenomeFingerprint other) {
+        int unmatchedLinks = 0;
+        int words = Math.max(linkBits.length, other.linkBits.length);
+        for (int word = 0; word < words; word++)
+            unmatchedLinks += Long.bitCount((word < linkBits.length ? linkBits[word] : 0) ^
+                    (word < other.linkBits.length ? other.linkBits[word] : 0));
+        return unmatchedLinks;
+    }
+
+    /**
+     * Decides whether the Genome of this fingerprint is compatible with the Genome of the given fingerprint, using the
+     * same compatibility score as Genome.isCompatibleWith.
+     *
+     * @param other The fingerprint of the Genome to test compatibility with
+     * @param unmatchedCoeff Coefficient of unmatched genes
+     * @param weightDiffCoeff Coefficient of weigh difference in matched genes
+     * @param activationDiffCoeff Coefficient of activation difference in matched nodes
+     * @param compatibilityThreshold The threshold after which the Genome is considered non-compatible
+     * @return The decision whether the two Genomes are compatible or not
+     */
+    public boolean isCompatibleWith(GenomeFingerprint other, double unmatchedCoeff, double weightDiffCoeff,
+                                    double activationDiffCoeff, double compatibilityThreshold) {
+
+        int unmatchedLinks = 0;
+        int matchedLinks = 0;
+        double totalWeightDiff = 0;
+
+        // Ranks of the first bit of the current word, in each bitset
+        int rank = 0, otherRank = 0;
+        int words = Math.max(linkBits.length, other.linkBits.length);
+        for (int word = 0; word < words; word++) {
+            long bits = word < linkBits.length ? linkBits[word] : 0;
+            long otherBits = word < other.linkBits.length ? other.linkBits[word] : 0;
+
+            unmatchedLinks += Long.bitCount(bits ^ otherBits);
+
+            // Matching links: locate their weights by rank
+            for (long matched = bits & otherBits; matched != 0; matched &= matched - 1) {
+                long below = Long.lowestOneBit(matched) - 1;
+                totalWeightDiff += Math.abs(weights[rank + Long.bitCount(bits & below)] -
+                        other.weights[otherRank + Long.bitCount(otherBits & below)]);
+                matchedLinks++;
+            }
+
+            rank += Long.bitCount(bits);
+            otherRank += Long.bitCount(otherBits);
+        }
+
+        // As in Genome.isCompatibleWith, Genomes without matching links have a NaN score, hence are incompatible
+        double score = unmatchedCoeff * unmatchedLinks + weightDiffCoeff * (totalWeightDiff / matchedLinks);
+
+        if (activationDiffCoeff > 0) {
+            int matchedNodes = 0;
+            double activationDiff = 0;
+            rank = 0;
+            otherRank = 0;
+            words = Math.min(nodeBits.length, other.nodeBits.length);
+            for (int word = 0; word < words; word++) {
+                long bits = nodeBits[word], otherBits = other.nodeBits[word];
+                for (long matched = bits & otherBits; matched != 0; matched &= matched - 1) {
+                    long below = Long.lowestOneBit(matched) - 1;
+                    if (activations[rank + Long.bitCount(bits & below)] !=
+                            other.activations[otherRank + Long.bitCount(otherBits & below)])
+                        activationDiff++;
+                    matchedNodes++;
+                }
+                rank += Long.bitCount(bits);
+                otherRank += Long.bitCount(otherBits);
+            }
+            score += activationDiffCoeff * (activationDiff / matchedNodes);
+        }
+
+        return score < compatibilityThreshold;
+    }
+}
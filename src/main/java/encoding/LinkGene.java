@@ -42,6 +42,25 @@ public class LinkGene implements Comparable<LinkGene>, Serializable {
         isLoop = (sourceNodeId == destinationNodeId);
     }
 
+    /**
+     * Constructs a LinkGene out of its raw fields, as read back from a binary encoding. The innovations database is not
+     * consulted, the id must be one it has already assigned to the given source and destination nodes.
+     *
+     * @param id ID of the link
+     * @param sourceNodeId ID of the source node
+     * @param destinationNodeId ID of the destination node
+     * @param weight Weight of the link
+     * @param enabled Whether the link is enabled
+     */
+    public LinkGene(int id, int sourceNodeId, int destinationNodeId, double weight, boolean enabled) {
+        this.id = id;
+        this.sourceNodeId = sourceNodeId;
+        this.destinationNodeId = destinationNodeId;
+        this.weight = weight;
+        this.enabled = enabled;
+        this.isLoop = (sourceNodeId == destinationNodeId);
+    }
+
 
     /**
      * Copy constructor, creates an identical copy of the given LinkGene, with a different reference
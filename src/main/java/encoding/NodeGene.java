@@ -123,6 +123,10 @@ public class NodeGene implements Comparable<NodeGene>, Serializable {
         return activationFunction;
     }
 
+    public ActivationType getActivationType() {
+        return activationType;
+    }
+
     public void setActivationFunction(ActivationType activationType) {
         this.activationType = activationType;
         this.activationFunction = ActivationType.getActivationFunction(this.activationType);
@@ -0,0 +1,317 @@
+package encoding.phenotype;
+
+import activations.ActivationFunction;
+import encoding.Genome;
+import encoding.LinkGene;
+import encoding.NodeGene;
+import encoding.NodeType;
+import engine.Population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the networks of a list of Genomes into shared primitive arrays, and activates all of them on the same input
+ * rows in a single pass. The nodes of all networks are stored contiguously in one value array, and the incoming and
+ * outgoing links of each node are stored in compressed arrays (the incoming links of node n span the range
+ * [incomingStart[n], incomingStart[n + 1])), which replaces the object graph of NeuralNetwork with a few flat arrays.
+ *
+ * Activation is equivalent to calling NeuralNetwork.activate() then getOutputValue() on each row: node values and
+ * inactive incoming links counters persist from one row to the next, and nodes are activated in the same order, hence
+ * the results are identical to those of a freshly built NeuralNetwork for each Genome.
+ *
+ * @author Acemad
+ */
+public class PopulationInferenceEngine {
+
+    private final int networkCount;
+
+    // Per network: offsets in the node arrays, in the input/output index arrays, and in the activation order array
+    private final int[] nodeStart;
+    private final int[] inputStart;
+    private final int[] outputStart;
+    private final int[] activableStart;
+
+    // Per node: current value, activation function, and incoming/outgoing link ranges
+    private final double[] values;
+    private final double[] initialValues;
+    private final ActivationFunction[] activationFunctions;
+    private final int[] incomingStart;
+    private final int[] outgoingStart;
+
+    // Number of inactive incoming links of each node, see NeuralNode
+    private final int[] inactiveIncomingLinks;
+    private final int[] initialInactiveIncomingLinks;
+
+    // Incoming links: global index of the source node and weight. Outgoing links: global index of the destination node
+    private final int[] incomingSource;
+    private final double[] incomingWeight;
+    private final int[] outgoingDestination;
+
+    // Global indices of the input and output nodes of each network
+    private final int[] inputNodes;
+    private final int[] outputNodes;
+
+    // Global indices of the hidden then output nodes of each network in Genome order, and their activation order
+    private final int[] activableNodes;
+    private final int[] activationOrder;
+    // Whether all inactive incoming links counters of a network reached 0, in which case the order is the Genome order
+    private final boolean[] settledOrder;
+
+    /**
+     * Compiles the networks of all the members of the given population
+     * @param population The population whose members are compiled
+     */
+    public PopulationInferenceEngine(Population population) {
+        this(population.getPopulationMembers());
+    }
+
+    /**
+     * Compiles the networks of the given Genomes
+     * @param genomes The Genomes to compile
+     */
+    public PopulationInferenceEngine(List<Genome> genomes) {
+
+        networkCount = genomes.size();
+        nodeStart = new int[networkCount + 1];
+        inputStart = new int[networkCount + 1];
+        outputStart = new int[networkCount + 1];
+        activableStart = new int[networkCount + 1];
+
+        // First pass: compute the size of the arrays
+        int nodes = 0, links = 0, inputs = 0, outputs = 0, activables = 0;
+        for (int g = 0; g < networkCount; g++) {
+            Genome genome = genomes.get(g);
+            nodeStart[g] = nodes;
+            inputStart[g] = inputs;
+            outputStart[g] = outputs;
+            activableStart[g] = activables;
+            nodes += genome.getInputNodeGenes().size() + genome.getHiddenNodeGenes().size() +
+                    genome.getOutputNodeGenes().size() + (genome.getBiasNodeGene() != null ? 1 : 0);
+            inputs += genome.getInputNodeGenes().size();
+            outputs += genome.getOutputNodeGenes().size();
+            activables += genome.getHiddenNodeGenes().size() + genome.getOutputNodeGenes().size();
+            for (LinkGene linkGene : genome.getLinkGenes())
+                if (linkGene.isEnabled()) links++;
+        }
+        nodeStart[networkCount] = nodes;
+        inputStart[networkCount] = inputs;
+        outputStart[networkCount] = outputs;
+        activableStart[networkCount] = activables;
+
+        values = new double[nodes];
+        initialValues = new double[nodes];
+        activationFunctions = new ActivationFunction[nodes];
+        incomingStart = new int[nodes + 1];
+        outgoingStart = new int[nodes + 1];
+        inactiveIncomingLinks = new int[nodes];
+        initialInactiveIncomingLinks = new int[nodes];
+        incomingSource = new int[links];
+        incomingWeight = new double[links];
+        outgoingDestination = new int[links];
+        inputNodes = new int[inputs];
+        outputNodes = new int[outputs];
+        activableNodes = new int[activables];
+        activationOrder = new int[activables];
+        settledOrder = new boolean[networkCount];
+
+        // Second pass: fill the arrays, network by network
+        int linkOffset = 0;
+        for (int g = 0; g < networkCount; g++)
+            linkOffset = compile(g, genomes.get(g), linkOffset);
+        incomingStart[nodes] = linkOffset;
+        outgoingStart[nodes] = linkOffset;
+
+        reset();
+    }
+
+    /**
+     * Compiles the network of a single Genome into the shared arrays
+     *
+     * @param network The index of the network
+     * @param genome The Genome to compile
+     * @param linkOffset The index of the first link of this network
+     * @return The index of the first link of the next network
+     */
+    private int compile(int network, Genome genome, int linkOffset) {
+
+        // Assign global indices to the nodes, in the order used by NeuralNetwork
+        Map<Integer, Integer> nodeIndex = new HashMap<>();
+        List<NodeGene> nodeGenes = new ArrayList<>(genome.getInputNodeGenes());
+        if (genome.getBiasNodeGene() != null) nodeGenes.add(genome.getBiasNodeGene());
+        nodeGenes.addAll(genome.getHiddenNodeGenes());
+        nodeGenes.addAll(genome.getOutputNodeGenes());
+
+        int index = nodeStart[network];
+        for (NodeGene nodeGene : nodeGenes) {
+            nodeIndex.put(nodeGene.getId(), index);
+            initialValues[index] = nodeGene.getType() == NodeType.BIAS ? 1 : 0;
+            activationFunctions[index] = nodeGene.getActivationFunction();
+            index++;
+        }
+
+        int input = inputStart[network];
+        for (NodeGene nodeGene : genome.getInputNodeGenes())
+            inputNodes[input++] = nodeIndex.get(nodeGene.getId());
+        int output = outputStart[network];
+        for (NodeGene nodeGene : genome.getOutputNodeGenes())
+            outputNodes[output++] = nodeIndex.get(nodeGene.getId());
+        int activable = activableStart[network];
+        for (NodeGene nodeGene : genome.getHiddenNodeGenes())
+            activableNodes[activable++] = nodeIndex.get(nodeGene.getId());
+        for (NodeGene nodeGene : genome.getOutputNodeGenes())
+            activableNodes[activable++] = nodeIndex.get(nodeGene.getId());
+
+        // Count the incoming and outgoing links of each node, keeping the order of the LinkGenes
+        List<LinkGene> enabledLinks = new ArrayList<>();
+        for (LinkGene linkGene : genome.getLinkGenes())
+            if (linkGene.isEnabled()) enabledLinks.add(linkGene);
+
+        int[] incomingCount = new int[nodeGenes.size()];
+        int[] outgoingCount = new int[nodeGenes.size()];
+        for (LinkGene linkGene : enabledLinks) {
+            int source = nodeIndex.get(linkGene.getSourceNodeId());
+            int destination = nodeIndex.get(linkGene.getDestinationNodeId());
+            incomingCount[destination - nodeStart[network]]++;
+            outgoingCount[source - nodeStart[network]]++;
+            // Links coming from hidden and output nodes are inactive until their source is activated
+            NodeType sourceType = nodeGenes.get(source - nodeStart[network]).getType();
+            if (sourceType == NodeType.HIDDEN || sourceType == NodeType.OUTPUT)
+                initialInactiveIncomingLinks[destination]++;
+        }
+
+        int incoming = linkOffset, outgoing = linkOffset;
+        for (int n = 0; n < nodeGenes.size(); n++) {
+            incomingStart[nodeStart[network] + n] = incoming;
+            outgoingStart[nodeStart[network] + n] = outgoing;
+            incoming += incomingCount[n];
+            outgoing += outgoingCount[n];
+        }
+
+        // Fill the link ranges
+        int[] incomingFill = new int[nodeGenes.size()];
+        int[] outgoingFill = new int[nodeGenes.size()];
+        for (LinkGene linkGene : enabledLinks) {
+            int source = nodeIndex.get(linkGene.getSourceNodeId());
+            int destination = nodeIndex.get(linkGene.getDestinationNodeId());
+            int incomingSlot = incomingStart[destination] + incomingFill[destination - nodeStart[network]]++;
+            incomingSource[incomingSlot] = source;
+            incomingWeight[incomingSlot] = linkGene.getWeight();
+            int outgoingSlot = outgoingStart[source] + outgoingFill[source - nodeStart[network]]++;
+            outgoingDestination[outgoingSlot] = destination;
+        }
+
+        return linkOffset + enabledLinks.size();
+    }
+
+    /**
+     * Resets all networks to their initial state, as if they were freshly built
+     */
+    public void reset() {
+        System.arraycopy(initialValues, 0, values, 0, values.length);
+        System.arraycopy(initialInactiveIncomingLinks, 0, inactiveIncomingLinks, 0, inactiveIncomingLinks.length);
+        Arrays.fill(settledOrder, false);
+    }
+
+    /**
+     * Activates all networks on each of the given input rows, in order, and collects the outputs. The networks keep
+     * their state between rows and between calls, call reset() to start over.
+     *
+     * @param inputs The input rows, each row should be the same size as the number of input nodes of the networks
+     * @param passes How many passes should be made throughout each network for every row
+     * @return The outputs, indexed by [network][row][output node]
+     */
+    public double[][][] activate(double[][] inputs, int passes) {
+
+        double[][][] outputs = new double[networkCount][inputs.length][];
+
+        for (int row = 0; row < inputs.length; row++)
+            for (int network = 0; network < networkCount; network++) {
+                activate(network, inputs[row], passes);
+                outputs[network][row] = getOutputValue(network);
+            }
+
+        return outputs;
+    }
+
+    /**
+     * Activates a single network using the given input, for a number of passes
+     *
+     * @param network The index of the network
+     * @param input The input row
+     * @param passes How many passes should be made throughout the network
+     */
+    private void activate(int network, double[] input, int passes) {
+
+        // input size check
+        if (input.length != inputStart[network + 1] - inputStart[network]) {
+            System.err.println("Input data size doesn't match the input layer of the neural network");
+            return;
+        }
+
+        for (int i = 0; i < input.length; i++)
+            values[inputNodes[inputStart[network] + i]] = input[i];
+
+        int from = activableStart[network], to = activableStart[network + 1];
+        sortActivableNodes(network, from, to);
+
+        for (int pass = 0; pass < passes; pass++)
+            for (int i = from; i < to; i++) {
+                int node = activationOrder[i];
+
+                // Compute sum of incoming activations, then apply the activation function
+                double sum = 0;
+                for (int link = incomingStart[node]; link < incomingStart[node + 1]; link++)
+                    sum += incomingWeight[link] * values[incomingSource[link]];
+                values[node] = activationFunctions[node].apply(sum);
+
+                // The destinations of this node have one less inactive incoming link
+                for (int link = outgoingStart[node]; link < outgoingStart[node + 1]; link++)
+                    if (inactiveIncomingLinks[outgoingDestination[link]] > 0)
+                        inactiveIncomingLinks[outgoingDestination[link]]--;
+            }
+    }
+
+    /**
+     * Orders the hidden and output nodes of a network by their number of inactive incoming links, keeping the Genome
+     * order between nodes with the same count (stable insertion sort). Once all counters reach 0 the order no longer
+     * changes and is not recomputed.
+     */
+    private void sortActivableNodes(int network, int from, int to) {
+
+        if (settledOrder[network]) return;
+
+        boolean settled = true;
+        for (int i = from; i < to; i++) {
+            int node = activableNodes[i];
+            int key = inactiveIncomingLinks[node];
+            if (key != 0) settled = false;
+            int j = i - 1;
+            while (j >= from && inactiveIncomingLinks[activationOrder[j]] > key) {
+                activationOrder[j + 1] = activationOrder[j];
+                j--;
+            }
+            activationOrder[j + 1] = node;
+        }
+        settledOrder[network] = settled;
+    }
+
+    /**
+     * Returns the values of the output nodes of a network
+     * @param network The index of the network
+     * @return A double array containing output node values
+     */
+    public double[] getOutputValue(int network) {
+        double[] output = new double[outputStart[network + 1] - outputStart[network]];
+        for (int i = 0; i < output.length; i++)
+            output[i] = values[outputNodes[outputStart[network] + i]];
+        return output;
+    }
+
+    public int getNetworkCount() {
+        return networkCount;
+    }
+}
@@ -1,13 +1,20 @@
 package engine;
 
 import encoding.Genome;
+import engine.distributed.DistributedEvaluationFunction;
+import engine.distributed.FunctionReference;
+import engine.stats.CsvStatsSink;
 import engine.stats.EvolutionStats;
+import engine.stats.StatsColumns;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 import java.io.FileWriter;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Main class of ANEAT, contains facilities for loading NEAT configurations and running NEAT experiments
@@ -24,21 +31,33 @@ public class ANEAT {
 
     private final EvolutionStats evolutionStats;
 
+    // Whether to print the status of the evolution at each generation
+    private boolean verbose = true;
+
     /**
      * ANEAT Constructor, takes a path to a NEATConfig parameter file and create the necessary instances for running
      * experiments
      * @param configFile The path to a NEATConfig parameter file
      */
     public ANEAT(String configFile) {
+        this(new NEATConfig(configFile));
+    }
 
-        config = new NEATConfig(configFile);
+    /**
+     * ANEAT Constructor, takes a loaded configuration and create the necessary instances for running experiments
+     * @param config The NEAT configuration instance containing all parameters
+     */
+    public ANEAT(NEATConfig config) {
+
+        this.config = config;
         population = new Population(config);
         evolutionStats = new EvolutionStats();
     }
 
     /**
      * ANEAT Resume constructor, takes a configuration file path and a path to a saved population object to continue
-     * evolution from
+     * evolution from. The population file is memory mapped and its Genomes are decoded on first access (see
+     * Population.readFromFile), while the stats file is read concurrently on a separate thread.
      * @param configFile The path to a NEATConfig parameter file
      * @param populationFile The population file to continue evolution from
      * @param statsFile The evolution stats file to continue updating
@@ -46,85 +65,162 @@ public class ANEAT {
     public ANEAT(String configFile, String populationFile, String statsFile) {
         config = new NEATConfig(configFile);
         System.out.println("Loading files ...");
+
+        FutureTask<EvolutionStats> statsLoader = null;
+        if (statsFile != null) {
+            statsLoader = new FutureTask<>(() -> EvolutionStats.readFromFile(statsFile));
+            Thread loaderThread = new Thread(statsLoader, "stats-loader");
+            loaderThread.setDaemon(true);
+            loaderThread.start();
+        }
+
         population = Population.readFromFile(populationFile);
-        if (statsFile != null)
-            evolutionStats = EvolutionStats.readFromFile(statsFile);
-        else
-            evolutionStats = new EvolutionStats();
+
+        EvolutionStats loadedStats = null;
+        if (statsLoader != null) {
+            try {
+                loadedStats = statsLoader.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException exception) {
+                exception.printStackTrace();
+            }
+        }
+        evolutionStats = loadedStats != null ? loadedStats : new EvolutionStats();
+    }
+
+    /**
+     * ANEAT Resume constructor, takes a configuration file path and a path to a checkpoint log to continue evolution
+     * from. The population and the evolution stats are restored by replaying the log (see CheckpointLog)
+     * @param configFile The path to a NEATConfig parameter file
+     * @param checkpointLogFile The checkpoint log of the run to continue
+     * @throws UncheckedIOException If the log cannot be read or replayed
+     */
+    public ANEAT(String configFile, String checkpointLogFile) {
+        config = new NEATConfig(configFile);
+        System.out.println("Replaying checkpoint log ...");
+        evolutionStats = new EvolutionStats();
+        try {
+            population = CheckpointLog.replay(Path.of(checkpointLogFile), evolutionStats);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot replay the checkpoint log " + checkpointLogFile, exception);
+        }
     }
 
     /**
      * Using the provided fitness function, starts a NEAT evolution process for the given number of generations.
-     * This method will also save the population and the best genome to separate files on each generation, if
-     * the provided baseFileName is not null
+     * This method will also save the population every checkpointInterval generations and at the end of the run, and
+     * append the best genome of each generation to the hall of fame of the run (see HallOfFame), if the provided
+     * baseFileName is not null. Files are written in the background, without holding up evolution (see Checkpointer).
+     * The run ends early once a genome reaches the configured target fitness, or when the configured time budget is
+     * exhausted.
      *
      * @param fitnessFunction The function used for evaluating the quality of solutions
      * @param generations The number of generations to take
-     * @param baseFileName Base name of the population and best genomes file to save on each generation
+     * @param baseFileName Base name of the population and hall of fame files to save on each generation
      */
     public void run(EvaluationFunction fitnessFunction, int generations, String baseFileName) {
 
-        for (int gen = 1; gen <= generations; gen++) {
-            // Evolve population
-            population.evolve(fitnessFunction, config, evolutionStats);
-            // Prints the status of the evolution
-            printStatus(gen, generations);
-            // Save the population:
-            savePopulation(baseFileName);
-            saveBestGenome(baseFileName);
+        EvaluationControl control = new EvaluationControl(config);
+        openStatsOutput(baseFileName);
+
+        try (Checkpointer checkpointer = new Checkpointer(baseFileName, config)) {
+            for (int gen = 1; gen <= generations; gen++) {
+                // Evolve population, stop if the target fitness is reached or the time budget is exhausted
+                boolean proceed = population.evolve(fitnessFunction, config, evolutionStats, control);
+                // Prints the status of the evolution
+                printStatus(gen, proceed ? generations : gen);
+                // Save the population, always at the last generation
+                checkpointer.checkpoint(population, evolutionStats, !proceed || gen == generations);
+                if (!proceed) break;
+            }
         }
+        evolutionStats.closeSinks();
         saveStats(baseFileName);
         System.gc();
     }
 
     /**
-     * Saves the population using the given base file name. Only saves the three last generations, deletes the rest.
-     * @param baseFileName Path to the file
+     * Starts a NEAT evolution process for the given number of generations, using the fitness function given by its
+     * reference. If evaluationProcesses is set, Genomes are evaluated by that many worker JVMs, which isolates the
+     * evolution process from crashes of the fitness function, otherwise the function is called in this JVM.
+     *
+     * @param functionReference Reference to a static fitness method, of the form "package.Class::method"
+     * @param generations The number of generations to take
+     * @param baseFileName Base name of the population and hall of fame files to save on each generation
      */
-    private void savePopulation(String baseFileName) {
-
-        if (baseFileName != null) {
-            population.saveToFile(baseFileName + "Pop-" + population.getAge());
-            // Keep only the three most recent generations
-            if (population.getAge() > 3) {
-                try {
-                    Files.deleteIfExists(Path.of(baseFileName + "Pop-" + (population.getAge() - 3)));
-                } catch (Exception exception) {
-                    exception.printStackTrace();
-                }
-            }
+    public void run(String functionReference, int generations, String baseFileName) {
+
+        if (config.evaluationProcesses() == 0) {
+            run(FunctionReference.resolve(functionReference), generations, baseFileName);
+            return;
+        }
+
+        try (DistributedEvaluationFunction fitnessFunction =
+                     new DistributedEvaluationFunction(functionReference, config)) {
+            run(fitnessFunction, generations, baseFileName);
+        } catch (IOException exception) {
+            exception.printStackTrace();
         }
     }
 
     /**
-     * Saves the best genome of the population using the given path. Only saves the three last generations.
-     * @param baseFileName Path to the file
+     * Using the provided fitness function, starts a steady-state NEAT evolution process for the given number of
+     * Genome evaluations. Instead of replacing the whole population at each generation, the worst Genome is replaced
+     * by a new offspring each time an evaluation completes, which keeps all evaluation threads busy. The population
+     * and the best genome (to the hall of fame) are saved at the end of the run if the provided baseFileName is not
+     * null. The run ends early once a genome reaches the configured target fitness, or when the configured time budget
+     * is exhausted.
+     *
+     * @param fitnessFunction The function used for evaluating the quality of solutions
+     * @param evaluations The number of Genome evaluations to perform
+     * @param baseFileName Base name of the population and hall of fame files to save
      */
-    private void saveBestGenome(String baseFileName) {
-        if (baseFileName != null) {
-            population.getBestGenome().saveToFile(baseFileName + "Best-" + population.getAge());
-            // Keep only the three most recent generations
-            if (population.getAge() > 3) {
-                try {
-                    Files.deleteIfExists(Path.of(baseFileName + "Best-" + (population.getAge() - 3)));
-                } catch (Exception exception) {
-                    exception.printStackTrace();
-                }
-            }
+    public void runSteadyState(EvaluationFunction fitnessFunction, long evaluations, String baseFileName) {
+
+        openStatsOutput(baseFileName);
+        SteadyStateEvolution steadyStateEvolution = new SteadyStateEvolution(population, config, evolutionStats);
+        steadyStateEvolution.run(fitnessFunction, evaluations, new EvaluationControl(config));
+        evolutionStats.closeSinks();
+
+        printStatus(population.getAge(), population.getAge());
+        try (Checkpointer checkpointer = new Checkpointer(baseFileName, config)) {
+            checkpointer.checkpoint(population, evolutionStats, true);
         }
+        saveStats(baseFileName);
+        System.gc();
     }
 
     /**
-     * Saves the evolution stats instance to a file on the disk using the given path. Also saves a CSV short stats
-     * version
+     * Sets up the statistics of the run: in streaming stats mode, keeps only the recent statistics in memory. If the
+     * provided baseFileName is not null, the summary of each generation is written as the run goes, according to
+     * statsOutput, to <base>Stats.csv and <base>SpeciesStats.csv, and/or to the <base>Stats-<statistic> column files.
+     * The files of a resumed run are appended to, once the rows of the generations it runs again are dropped.
+     * @param baseFileName Base name of the statistics files
+     */
+    private void openStatsOutput(String baseFileName) {
+
+        if (config.streamingStats())
+            evolutionStats.enableStreaming(config.statsRetention());
+        if (baseFileName == null) return;
+
+        boolean append = evolutionStats.getGenerationCount() > 0;
+        String output = config.statsOutput();
+        if (output.equals("csv") || output.equals("both"))
+            evolutionStats.addSink(new CsvStatsSink(baseFileName + "Stats.csv", baseFileName + "SpeciesStats.csv",
+                    append));
+        if (output.equals("columnar") || output.equals("both"))
+            evolutionStats.addSink(new StatsColumns(baseFileName + "Stats-", append));
+    }
+
+    /**
+     * Saves the evolution stats instance to a file on the disk using the given path
      * @param baseFileName Basic file path to save to
      */
     private void saveStats(String baseFileName) {
 
-        if (baseFileName != null) {
-            saveCSVReport(baseFileName + "Stats.csv", evolutionStats);
-            evolutionStats.saveToFile(baseFileName + "Stats");
-        }
+        if (baseFileName != null)
+            evolutionStats.saveToFile(baseFileName + "Stats", config.checkpointCompression());
     }
 
     /**
@@ -134,6 +230,7 @@ public class ANEAT {
      * @param maxGenerations The maximum number of generations
      */
     private void printStatus(int generation, int maxGenerations) {
+        if (!verbose) return;
         String status = "Gen: " + String.format("%-4d", generation) +
                 " | Age: " + String.format("%-4d", population.getAge()) +
                 " | Top Fitness: " + population.getTopFitness() +
@@ -144,14 +241,16 @@ public class ANEAT {
     }
 
     /**
-     * TODO Elaborate a CSV report
-     * @param filePath
+     * Writes a CSV report of the fitness statistics held in memory by the given stats instance, e.g. one loaded from a
+     * file. The statistics of a run are already written to <base>Stats.csv as it goes (see statsOutput)
+     * @param filePath The CSV file to write
+     * @param stats The statistics to report
      */
     public void saveCSVReport(String filePath, EvolutionStats stats) {
         try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(filePath), CSVFormat.EXCEL)) {
             csvPrinter.printRecord("gen", "max", "min", "mean", "geoMean", "median", "variance", "sd", "sum");
             for (int i = 0; i < stats.getPopulationFitnessStats().size(); i++) {
-                csvPrinter.printRecord(i+1,
+                csvPrinter.printRecord(stats.getFirstGeneration() + i + 1,
                         stats.getPopulationFitnessStats().get(i).getMax(),
                         stats.getPopulationFitnessStats().get(i).getMin(),
                         stats.getPopulationFitnessStats().get(i).getMean(),
@@ -178,4 +277,13 @@ public class ANEAT {
     public EvolutionStats getEvolutionStats() {
         return evolutionStats;
     }
+
+    /**
+     * Sets whether to print the status of the evolution at each generation, e.g. disabled when runs are executed
+     * concurrently (see ExperimentRunner)
+     * @param verbose Whether to print the status
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
 }
@@ -0,0 +1,77 @@
+package engine;
+
+import encoding.Genome;
+
+/**
+ * An evaluation function whose fitness is accumulated over a fixed set of test cases, and that can evaluate a Genome
+ * on any contiguous range of these cases. This case-incremental contract allows the evaluation layer to score Genomes
+ * on a subset of the cases first and only extend the evaluation of the most promising ones (racing).
+ *
+ * Partial scores of disjoint case ranges must be combinable in any grouping (associative combine), and the fitness
+ * of a Genome is derived from its combined partial score and the number of cases it covers.
+ *
+ * @author Acemad
+ */
+public interface CaseEvaluationFunction extends EvaluationFunction {
+
+    /**
+     * @return The total number of test cases
+     */
+    int caseCount();
+
+    /**
+     * Evaluates a Genome on the test cases of index from (inclusive) to index to (exclusive). Implementations going
+     * through many cases should return early once context.isCancelled() holds, the range having overrun its time budget
+     *
+     * @param genome The Genome to evaluate
+     * @param from The index of the first case
+     * @param to The index following the last case
+     * @param context The context of the evaluation of the range
+     * @return The partial score of the Genome on these cases
+     */
+    double evaluateCases(Genome genome, int from, int to, EvaluationContext context);
+
+    /**
+     * Combines the partial scores of two disjoint case ranges. Must be associative, sums by default.
+     *
+     * @param partial The partial score of the first range
+     * @param otherPartial The partial score of the second range
+     * @return The partial score of both ranges
+     */
+    default double combine(double partial, double otherPartial) {
+        return partial + otherPartial;
+    }
+
+    /**
+     * Derives the fitness of a Genome from its partial score. By default, the partial score is extrapolated to the
+     * full set of cases, which makes the fitness of Genomes evaluated on different numbers of cases comparable.
+     *
+     * @param partial The combined partial score of the Genome
+     * @param casesEvaluated The number of cases covered by the partial score
+     * @return The fitness of the Genome
+     */
+    default double fitness(double partial, int casesEvaluated) {
+        return casesEvaluated == 0 ? 0 : partial * caseCount() / casesEvaluated;
+    }
+
+    /**
+     * Evaluates a Genome on the full set of cases, without time limit
+     * @param genome The Genome to evaluate
+     * @return The fitness of the Genome
+     */
+    @Override
+    default double evaluate(Genome genome) {
+        return evaluate(genome, new EvaluationContext(0));
+    }
+
+    /**
+     * Evaluates a Genome on the full set of cases within the given context
+     * @param genome The Genome to evaluate
+     * @param context The context of the evaluation
+     * @return The fitness of the Genome
+     */
+    @Override
+    default double evaluate(Genome genome, EvaluationContext context) {
+        return fitness(evaluateCases(genome, 0, caseCount(), context), caseCount());
+    }
+}
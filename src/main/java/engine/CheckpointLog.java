@@ -0,0 +1,246 @@
+package engine;
+
+import encoding.Genome;
+import engine.stats.EvolutionStats;
+import innovation.InnovationDB;
+import util.BinaryInput;
+import util.BinaryOutput;
+import util.Compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of checkpoints, holding both the population and the evolution statistics of a run. The log starts
+ * with a base record, a full snapshot, followed by one delta record per checkpoint, which only holds what changed since
+ * the previous record: the new innovations, the new Genomes (Genomes already written, such as the surviving parents,
+ * are referred to by their previous index), the population values and species, and the statistics recorded since.
+ * Resuming replays the records in order.
+ *
+ * A new base record is written every baseInterval records, and replaces the whole log (compaction), hence the log
+ * never holds more than baseInterval records. Base records are written to a temporary file then renamed, delta records
+ * are appended. Each record is followed by the CRC32 of its payload, a record cut short by a crash is ignored when
+ * replaying, and the previous checkpoint is resumed.
+ *
+ * Records can be compressed: the payload of a compressed record is deflated on the writer thread, and preceded by its
+ * original length. Genomes are written in the format of CompactGenomeCodec.
+ *
+ * Layout: magic number, version, then records: type (byte, with the COMPRESSED flag), payload length (int), payload,
+ * CRC32 of the payload (int).
+ *
+ * @author Acemad
+ */
+public class CheckpointLog {
+
+    // "ANEATLOG" magic number, and version
+    private static final long LOG_MAGIC = 0x414E4541544C4F47L;
+    private static final int LOG_VERSION = 1;
+
+    // Record types, and the flag of compressed records
+    private static final byte BASE = 1;
+    private static final byte DELTA = 2;
+    private static final byte COMPRESSED = (byte) 0x80;
+
+    private final Path file;
+    private final int baseInterval;
+    private final boolean compress;
+    private final boolean floatWeights;
+
+    // The state of the last encoded record, from which the next delta is computed. Evolution thread only
+    private int recordsSinceBase = -1;                // -1 until the first record, which is a base
+    private Map<Genome, Integer> genomeIndexes;
+    private int nodeCount;
+    private int linkCount;
+    private EvolutionStats.Mark statsMark;
+
+    // Whether writing a record failed, in which case deltas are skipped until the next base record. Writer thread only
+    private boolean failed = false;
+
+    /**
+     * An encoded record, waiting to be written
+     */
+    static class Record {
+        private final byte type;
+        private final byte[] payload;
+
+        private Record(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Creates a log writing to the given file. The first record written replaces the file, if any
+     *
+     * @param file The log file
+     * @param baseInterval The number of records between two base records (1: only base records)
+     * @param compress Whether to compress records
+     * @param floatWeights Whether to write weights as floats rather than doubles, which loses precision
+     */
+    public CheckpointLog(Path file, int baseInterval, boolean compress, boolean floatWeights) {
+        this.file = file;
+        this.baseInterval = Math.max(1, baseInterval);
+        this.compress = compress;
+        this.floatWeights = floatWeights;
+    }
+
+    /**
+     * Encodes the next record of the log: a base record every baseInterval records, a delta record otherwise. Must be
+     * called between generations, from the thread running the evolution.
+     *
+     * @param population The population to save
+     * @param evolutionStats The statistics of the run
+     * @return The encoded record, to be written by write
+     * @throws IOException If encoding fails
+     */
+    Record encode(Population population, EvolutionStats evolutionStats) throws IOException {
+
+        boolean base = recordsSinceBase < 0 || recordsSinceBase + 1 >= baseInterval;
+        InnovationDB innovationDB = population.getInnovations();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes))) {
+            if (base) {
+                innovationDB.writeTo(out);
+                genomeIndexes = population.writeState(out, null, floatWeights);
+                evolutionStats.writeDelta(out, EvolutionStats.Mark.empty());
+            } else {
+                innovationDB.writeDelta(out, nodeCount, linkCount);
+                genomeIndexes = population.writeState(out, genomeIndexes, floatWeights);
+                evolutionStats.writeDelta(out, statsMark);
+            }
+        }
+
+        recordsSinceBase = base ? 0 : recordsSinceBase + 1;
+        nodeCount = innovationDB.getNodeCount();
+        linkCount = innovationDB.getLinkCount();
+        statsMark = evolutionStats.mark();
+        return new Record(base ? BASE : DELTA, bytes.toByteArray());
+    }
+
+    /**
+     * Writes an encoded record to the log: a base record replaces the log, a delta record is appended to it. Records
+     * must be written in the order they were encoded. Once a write fails, the following delta records are skipped,
+     * as they can't be applied without the missing one, until the next base record.
+     *
+     * @param record The record to write
+     * @throws IOException If writing fails
+     */
+    void write(Record record) throws IOException {
+
+        if (record.type == DELTA && failed) return;
+        failed = true;
+
+        byte type = record.type;
+        byte[] payload = record.payload;
+        if (compress) {
+            byte[] deflated = Compression.deflate(payload, 0, payload.length);
+            payload = ByteBuffer.allocate(Integer.BYTES + deflated.length).putInt(payload.length).put(deflated).array();
+            type |= COMPRESSED;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((record.type == BASE ? Long.BYTES + Integer.BYTES : 0) +
+                1 + Integer.BYTES + payload.length + Integer.BYTES);
+        if (record.type == BASE) buffer.putLong(LOG_MAGIC).putInt(LOG_VERSION);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.put(type).putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        buffer.flip();
+
+        if (record.type == BASE) {
+            Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+            writeFully(temporaryFile, buffer, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            writeFully(file, buffer, StandardOpenOption.APPEND);
+        }
+        failed = false;
+    }
+
+    private static void writeFully(Path path, ByteBuffer buffer, StandardOpenOption mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Replays a checkpoint log, and returns the population of its last complete record. The statistics recorded up to
+     * that record are added to the given (empty) statistics instance.
+     *
+     * @param file The log file
+     * @param evolutionStats An empty statistics instance, receives the statistics of the run
+     * @return The population of the last complete record
+     * @throws IOException If reading fails, or the file doesn't start with a complete base record
+     */
+    public static Population replay(Path file, EvolutionStats evolutionStats) throws IOException {
+
+        Population population = null;
+        List<Genome> genomes = null;
+
+        try (BinaryInput in = BinaryInput.fromFile(file)) {
+            if (in.getLong() != LOG_MAGIC)
+                throw new IOException("Not a checkpoint log: " + file);
+            int version = in.getInt();
+            if (version != LOG_VERSION)
+                throw new IOException("Unsupported checkpoint log version: " + version);
+
+            while (true) {
+                byte type;
+                ByteBuffer payload;
+                try {
+                    type = in.getByte();
+                    payload = in.getBuffer(in.getInt());
+                    CRC32 crc = new CRC32();
+                    crc.update(payload.duplicate());
+                    if (in.getInt() != (int) crc.getValue()) {
+                        System.err.println("Corrupted record in checkpoint log, resuming from the previous one");
+                        break;
+                    }
+                } catch (EOFException | NegativeArraySizeException exception) {
+                    break; // End of the log, or a record cut short
+                }
+
+                if ((type & COMPRESSED) != 0) {
+                    type &= ~COMPRESSED;
+                    int length = payload.getInt();
+                    payload = Compression.inflate(payload, length);
+                }
+                // Genomes are read lazily from the record, those replaced by a later record are never decoded
+                BinaryInput record = new BinaryInput(payload);
+                List<Genome> recordGenomes = new ArrayList<>();
+                if (type == BASE) {
+                    population = Population.readState(record, InnovationDB.readFrom(record), null, recordGenomes);
+                } else {
+                    if (population == null)
+                        throw new IOException("Checkpoint log doesn't start with a base record: " + file);
+                    InnovationDB innovationDB = population.getInnovations();
+                    innovationDB.readDelta(record);
+                    population = Population.readState(record, innovationDB, genomes, recordGenomes);
+                }
+                evolutionStats.readDelta(record);
+                genomes = recordGenomes;
+            }
+        }
+
+        if (population == null)
+            throw new IOException("No complete record in checkpoint log: " + file);
+        return population;
+    }
+}
@@ -0,0 +1,236 @@
+package engine;
+
+import engine.stats.EvolutionStats;
+import util.BinaryOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves checkpoints of an evolving population (the population file of a generation) on a background writer thread,
+ * which keeps disk writes out of the generation loop. At the end of a generation, the population is encoded in memory,
+ * which gives a consistent snapshot while the population keeps evolving, then queued for writing. Each file is written
+ * to a temporary file first, then renamed, hence a checkpoint file is either complete or absent. Only the most recent
+ * checkpoints are kept, older ones are deleted.
+ *
+ * The best genome of every generation is appended to the HallOfFame of the run, on the same thread.
+ *
+ * With checkpointCompression enabled, population files are deflated by the writer thread, off the generation loop.
+ *
+ * With checkpointLog enabled, the population and the statistics are appended to a CheckpointLog instead of being
+ * saved to a population file per checkpoint: only what changed since the previous checkpoint is written.
+ *
+ * Queueing blocks while the queue of snapshots waiting to be written is full, throttling evolution to the pace of the
+ * disk rather than accumulating snapshots in memory. A write failing with an exception is reported and skipped, and
+ * should the writer thread die anyway, queueing gives up instead of blocking the evolution forever.
+ *
+ * @author Acemad
+ */
+public class Checkpointer implements AutoCloseable {
+
+    private final String baseFileName;
+    private final int interval;
+    private final int retention;
+    private final boolean compress;
+    private final boolean floatWeights;
+    private final CheckpointLog log;                        // Null if population files are saved instead
+    private final HallOfFame.Writer hallOfFame;
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+
+    // Ages of the checkpoints written, oldest first. Writer thread only
+    private final Deque<Integer> savedAges = new ArrayDeque<>();
+    // Age of the last queued checkpoint and hall of fame entry, to avoid saving the same generation twice
+    private int lastAge = -1;
+    private int lastArchivedAge = -1;
+
+    // Marks the end of the stream of snapshots
+    private final Object poisonPill = new Object();
+
+    // Interval between two checks that the writer thread is still alive, while waiting for room in the queue
+    private static final long QUEUE_POLL_MILLIS = 1000;
+
+    /**
+     * A population snapshot waiting to be written
+     */
+    private static class Snapshot {
+        private final int age;
+        private final byte[] population;                    // Null in log mode
+        private final CheckpointLog.Record record;          // Null unless in log mode
+
+        private Snapshot(int age, byte[] population, CheckpointLog.Record record) {
+            this.age = age;
+            this.population = population;
+            this.record = record;
+        }
+    }
+
+    /**
+     * Creates the checkpointer and starts its writer thread
+     *
+     * @param baseFileName Base name of the population and hall of fame files, null to disable checkpoints
+     * @param config The configuration instance, giving the checkpoint interval, retention, queue capacity, compression
+     *               and log mode
+     */
+    public Checkpointer(String baseFileName, NEATConfig config) {
+
+        this.baseFileName = baseFileName;
+        this.interval = config.checkpointInterval();
+        this.retention = config.checkpointRetention();
+        this.compress = config.checkpointCompression();
+        this.floatWeights = config.checkpointFloatWeights();
+        this.log = baseFileName != null && config.checkpointLog() ? new CheckpointLog(Path.of(baseFileName + "Log"),
+                config.checkpointBaseInterval(), compress, floatWeights) : null;
+        this.hallOfFame = new HallOfFame.Writer(baseFileName);
+        queue = new ArrayBlockingQueue<>(Math.max(1, config.checkpointQueueCapacity()));
+
+        writer = new Thread(this::write, "checkpoint-writer");
+        writer.setDaemon(true);
+        if (baseFileName != null) writer.start();
+    }
+
+    /**
+     * Appends the best genome of the population to the hall of fame, and saves a checkpoint of the population if its
+     * age falls on the checkpoint interval, or if forced. Blocks while the queue of checkpoints waiting to be written
+     * is full.
+     *
+     * @param population The population to save
+     * @param evolutionStats The statistics of the run, saved along the population in log mode
+     * @param force Whether to save the population regardless of the interval, e.g. at the end of a run
+     */
+    public void checkpoint(Population population, EvolutionStats evolutionStats, boolean force) {
+
+        int age = population.getAge();
+        if (baseFileName == null) return;
+
+        try {
+            if (age != lastArchivedAge && population.getBestGenome() != null) {
+                if (!enqueue(hallOfFame.encode(age, population.getBestGenome()))) return;
+                lastArchivedAge = age;
+            }
+
+            if (age == lastAge) return;
+            if (!force && (interval <= 0 || age % interval != 0)) return;
+            if (!enqueue(log != null ? new Snapshot(age, null, log.encode(population, evolutionStats)) :
+                    new Snapshot(age, encode(population), null))) return;
+            lastAge = age;
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an element for the writer thread, waiting while the queue is full, unless the writer thread is dead
+     *
+     * @return true if the element was queued, false if the writer thread is dead
+     */
+    private boolean enqueue(Object element) throws InterruptedException {
+        while (writer.isAlive())
+            if (queue.offer(element, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+        System.err.println("The checkpoint writer thread is dead, checkpoint of " + baseFileName + " skipped");
+        return false;
+    }
+
+    /**
+     * Encodes the population in memory, in the format of Population.saveToFile, uncompressed: compression is left to
+     * the writer thread
+     */
+    private byte[] encode(Population population) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes))) {
+            population.writeTo(out, floatWeights);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The loop run by the writer thread: writes the queued hall of fame entries and snapshots in order, and deletes the
+     * checkpoints beyond retention, until the end of the stream is reached.
+     */
+    private void write() {
+        try (hallOfFame) {
+            while (true) {
+                Object element = queue.take();
+                if (element == poisonPill) return;
+
+                if (element instanceof HallOfFame.Entry) {
+                    try {
+                        hallOfFame.write((HallOfFame.Entry) element);
+                    } catch (IOException | RuntimeException exception) {
+                        exception.printStackTrace();
+                    }
+                    continue;
+                }
+
+                Snapshot snapshot = (Snapshot) element;
+                try {
+                    if (snapshot.record != null) log.write(snapshot.record);
+                    else writeAtomically(populationFile(snapshot.age),
+                            compress ? Population.compressEncoded(snapshot.population) : snapshot.population);
+                    savedAges.addLast(snapshot.age);
+                } catch (IOException | RuntimeException exception) {
+                    exception.printStackTrace();
+                }
+
+                // Keep only the most recent checkpoints, 0 keeps all
+                while (retention > 0 && savedAges.size() > retention) {
+                    int oldAge = savedAges.removeFirst();
+                    try {
+                        Files.deleteIfExists(populationFile(oldAge));
+                    } catch (IOException exception) {
+                        exception.printStackTrace();
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        } catch (InterruptedException ignored) {
+            // Checkpointer aborted
+        }
+    }
+
+    // Population files are not written in log mode, deleting them is harmless
+    private Path populationFile(int age) {
+        return Path.of(baseFileName + "Pop-" + age);
+    }
+
+    /**
+     * Writes the bytes to a temporary file next to the given file, then renames it to the given file
+     */
+    private static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporaryFile, bytes);
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Waits until all queued checkpoints are written, then stops the writer thread. Returns at once if the writer thread
+     * is dead
+     */
+    @Override
+    public void close() {
+        if (baseFileName == null || !writer.isAlive()) return;
+        try {
+            if (enqueue(poisonPill)) writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package engine;
+
+/**
+ * The context of a single Genome evaluation. Long running evaluation functions should poll isCancelled() (or react to
+ * the interruption of their thread) and return as soon as possible once the evaluation is cancelled: its result is
+ * discarded, the Genome having already received the timeout penalty fitness, or having been skipped since the run is
+ * over (target fitness reached or time budget exhausted).
+ *
+ * @author Acemad
+ */
+public class EvaluationContext {
+
+    // The time at which the evaluation times out (System.nanoTime()), Long.MAX_VALUE: no time limit
+    private final long deadline;
+
+    // The termination control of the run, null if none
+    private final EvaluationControl control;
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates the context of an evaluation starting now
+     * @param timeoutNanos The time budget of the evaluation in nanoseconds, 0 for unlimited
+     */
+    public EvaluationContext(long timeoutNanos) {
+        this(timeoutNanos, null);
+    }
+
+    /**
+     * Creates the context of an evaluation starting now, cancelled as well once the given control signals the end of
+     * the run
+     * @param timeoutNanos The time budget of the evaluation in nanoseconds, 0 for unlimited
+     * @param control The termination control of the run, null if none
+     */
+    public EvaluationContext(long timeoutNanos, EvaluationControl control) {
+        this.deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : Long.MAX_VALUE;
+        this.control = control;
+    }
+
+    /**
+     * Cancels the evaluation
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether the evaluation was cancelled, the evaluating thread interrupted, or the run ended
+     * @return true if the evaluation should stop
+     */
+    public boolean isCancelled() {
+        return cancelled || Thread.currentThread().isInterrupted() || (control != null && control.shouldStop());
+    }
+
+    /**
+     * @return The remaining time budget of the evaluation in milliseconds, Long.MAX_VALUE if unlimited
+     */
+    public long getRemainingMillis() {
+        if (deadline == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+    }
+}
@@ -0,0 +1,81 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared termination state of a run: a target fitness and a wall-clock budget. Evaluation threads report the fitness
+ * of each evaluated Genome, the best fitness is tracked lock-free, and as soon as the target is reached or the budget
+ * is exhausted, the run is flagged as stopped and outstanding evaluations are skipped.
+ *
+ * @author Acemad
+ */
+public class EvaluationControl {
+
+    // The fitness at which the run stops, NaN: no target
+    private final double targetFitness;
+    // The time at which the run stops (System.nanoTime()), Long.MAX_VALUE: no time limit
+    private final long deadline;
+
+    // Raw bits of the best reported fitness, updated through compare-and-set
+    private final AtomicLong bestFitnessBits = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+
+    private volatile boolean targetReached = false;
+    private volatile boolean timeExhausted = false;
+
+    /**
+     * Creates a control instance, the time budget starts counting immediately
+     *
+     * @param targetFitness The fitness at which the run stops, NaN to disable
+     * @param timeBudgetSeconds The wall-clock budget of the run in seconds, 0 for unlimited
+     */
+    public EvaluationControl(double targetFitness, double timeBudgetSeconds) {
+        this.targetFitness = targetFitness;
+        this.deadline = timeBudgetSeconds > 0 ?
+                System.nanoTime() + (long) (timeBudgetSeconds * 1e9) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates a control instance out of the termination parameters of the given configuration
+     * @param config The configuration instance containing all parameters
+     */
+    public EvaluationControl(NEATConfig config) {
+        this(config.targetFitness(), config.timeBudgetSeconds());
+    }
+
+    /**
+     * Reports the fitness of an evaluated Genome. Can be called concurrently from multiple evaluation threads.
+     * @param fitness The fitness of the evaluated Genome
+     */
+    public void report(double fitness) {
+
+        long currentBits = bestFitnessBits.get();
+        while (fitness > Double.longBitsToDouble(currentBits) &&
+                !bestFitnessBits.compareAndSet(currentBits, Double.doubleToRawLongBits(fitness)))
+            currentBits = bestFitnessBits.get();
+
+        if (!Double.isNaN(targetFitness) && fitness >= targetFitness)
+            targetReached = true;
+    }
+
+    /**
+     * Checks whether the run must stop, either because the target fitness was reached or the time budget is exhausted
+     * @return true if the run must stop
+     */
+    public boolean shouldStop() {
+        if (!timeExhausted && deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)
+            timeExhausted = true;
+        return targetReached || timeExhausted;
+    }
+
+    public boolean isTargetReached() {
+        return targetReached;
+    }
+
+    public boolean isTimeExhausted() {
+        return timeExhausted;
+    }
+
+    public double getBestFitness() {
+        return Double.longBitsToDouble(bestFitnessBits.get());
+    }
+}
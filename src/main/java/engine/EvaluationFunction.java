@@ -2,11 +2,7 @@ package engine;
 
 import encoding.Genome;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A functional interface used to define the evaluation (fitness) function to optimize, and provide a way to execute
@@ -25,39 +21,59 @@ public interface EvaluationFunction {
     double evaluate(Genome genome);
 
     /**
-     * Evaluates a population of Genomes concurrently across multiple threads using an ExecutorService
+     * Evaluates a Genome within the given context. Implementations running long evaluations should override this
+     * method and return early once context.isCancelled() holds, the evaluation having overrun its time budget.
+     * @param genome The Genome to evaluate
+     * @param context The context of the evaluation
+     * @return The value of the Genome
+     */
+    default double evaluate(Genome genome, EvaluationContext context) {
+        return evaluate(genome);
+    }
+
+    /**
+     * Evaluates a batch of Genomes together, storing the fitness of each Genome at the same index in fitnessOut. Called
+     * by the scheduler with chunks of evaluationBatchSize Genomes. Implementations can override this method to share
+     * work across Genomes, such as running several networks over the same input data, or setting up an environment
+     * once per batch. Evaluates the Genomes one at a time by default.
+     * @param genomes The Genomes to evaluate
+     * @param fitnessOut The array receiving the fitness of each Genome, of the same size as genomes
+     */
+    default void evaluateBatch(List<Genome> genomes, double[] fitnessOut) {
+        for (int i = 0; i < genomes.size(); i++)
+            fitnessOut[i] = evaluate(genomes.get(i));
+    }
+
+    /**
+     * Evaluates a batch of Genomes together within the given context, whose time budget covers the whole batch. Calls
+     * evaluateBatch(genomes, fitnessOut) by default.
+     * @param genomes The Genomes to evaluate
+     * @param fitnessOut The array receiving the fitness of each Genome, of the same size as genomes
+     * @param context The context of the evaluation
+     */
+    default void evaluateBatch(List<Genome> genomes, double[] fitnessOut, EvaluationContext context) {
+        evaluateBatch(genomes, fitnessOut);
+    }
+
+    /**
+     * Evaluates a population of Genomes concurrently across multiple threads using an EvaluationScheduler
      * @param genomes The List of Genome to evaluate
      * @return true if the process
      */
     default boolean evaluateAll(List<Genome> genomes, int threads) {
+        return evaluateAll(genomes, threads, null);
+    }
 
-        // Set the number of threads to use for evaluation.
-        int threadsToUse;
-        // In case threads is 0 use all the number of available cores
-        if (threads == 0) threadsToUse = Runtime.getRuntime().availableProcessors();
-        else threadsToUse = threads;
-        // For each Genome in the list of genomes, create a Runnable task for evaluation and add to the list of tasks
-        List<Runnable> tasks = new ArrayList<>();
-        for (Genome genome : genomes)
-            tasks.add(() -> genome.setFitness(evaluate(genome))); // Directly set the fitness of the Genome
-
-        // Create a fixed thread pool and execute the tasks.
-        ExecutorService executorService = Executors.newFixedThreadPool(threadsToUse);
-        tasks.forEach(executorService::execute);
-        // Initiate a proper shutdown, executing all previously submitted tasks and preventing submission of new tasks
-        executorService.shutdown();
-
-        // Wait for the termination of all tasks
-        try {
-            if (!executorService.awaitTermination(10, TimeUnit.HOURS)) {
-                executorService.shutdownNow();
-                return false;
-            } else
-                return true; // All tasks terminated
-
-        } catch (Exception exception) {
-            executorService.shutdownNow();
-            return false;
-        }
+    /**
+     * Evaluates a population of Genomes concurrently across multiple threads using an EvaluationScheduler. The fitness
+     * of each evaluated Genome is reported to the given control instance, once it signals the end of the run, the
+     * remaining Genomes are not evaluated and receive a fitness of 0.
+     * @param genomes The List of Genome to evaluate
+     * @param threads The number of threads to use, 0 to use all available cores
+     * @param control The termination control of the run, null if none
+     * @return true if all tasks terminated
+     */
+    default boolean evaluateAll(List<Genome> genomes, int threads, EvaluationControl control) {
+        return new EvaluationScheduler(this, threads, 1, 0, 0, control).evaluateAll(genomes);
     }
 }
@@ -0,0 +1,105 @@
+package engine;
+
+import encoding.Genome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An evaluation pipeline: a bounded queue of Genomes feeding an EvaluationScheduler. Genomes are evaluated as soon as
+ * they are submitted, which allows the evaluation of a generation to overlap with its production. Submission blocks
+ * while the queue is full, throttling the producer to the pace of evaluation.
+ *
+ * The evaluation threads run concurrently with the producer, hence the evaluation function must not rely on state
+ * modified during reproduction.
+ *
+ * @author Acemad
+ */
+public class EvaluationPipeline {
+
+    private final BlockingQueue<Object> queue;
+    private final EvaluationScheduler scheduler;
+    private final Thread dispatcher;
+    private final int batchSize;
+
+    // Marks the end of the stream of Genomes
+    private final Object poisonPill = new Object();
+
+    /**
+     * Creates the pipeline and starts dispatching queued Genomes to the given scheduler
+     *
+     * @param scheduler The scheduler evaluating the Genomes
+     * @param capacity The capacity of the queue of Genomes waiting for evaluation, 0 for twice the number of cores
+     * @param batchSize The maximum number of queued Genomes submitted to the scheduler at once
+     */
+    public EvaluationPipeline(EvaluationScheduler scheduler, int capacity, int batchSize) {
+
+        this.scheduler = scheduler;
+        this.batchSize = Math.max(1, batchSize);
+        queue = new ArrayBlockingQueue<>(capacity == 0 ? 2 * Runtime.getRuntime().availableProcessors() : capacity);
+
+        dispatcher = new Thread(this::dispatch, "evaluation-pipeline");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Submits a list of Genomes for evaluation, blocking if the queue is full
+     * @param genomes The Genomes to evaluate
+     */
+    public void submitAll(List<Genome> genomes) {
+        try {
+            for (Genome genome : genomes)
+                queue.put(genome);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Signals the end of submissions and waits until all submitted Genomes are evaluated
+     * @return true if all Genomes were evaluated, false if the wait was interrupted
+     */
+    public boolean awaitCompletion() {
+        try {
+            queue.put(poisonPill);
+            dispatcher.join();
+            return scheduler.awaitCompletion();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            dispatcher.interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The loop run by the dispatcher thread: takes the Genomes available in the queue, up to batchSize at once, and
+     * submits them as a batch to the scheduler, which blocks while all evaluation threads are busy, until the end of the
+     * stream is reached.
+     */
+    private void dispatch() {
+        List<Object> elements = new ArrayList<>();
+        try {
+            while (true) {
+                // Gather the Genomes waiting in the queue, up to a full batch
+                elements.clear();
+                elements.add(queue.take());
+                queue.drainTo(elements, batchSize - 1);
+
+                List<Genome> batch = new ArrayList<>();
+                boolean endOfStream = false;
+                for (Object element : elements) {
+                    if (element == poisonPill) endOfStream = true;
+                    else batch.add((Genome) element);
+                }
+
+                if (!batch.isEmpty() && !scheduler.submitBatch(batch)) return;
+                if (endOfStream) return;
+            }
+        } catch (InterruptedException ignored) {
+            // Pipeline aborted
+        }
+    }
+}
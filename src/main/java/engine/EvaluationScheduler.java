@@ -0,0 +1,526 @@
+package engine;
+
+import encoding.Genome;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Schedules Genome evaluations on a pool of worker threads, with an optional time budget per Genome. Genomes can be
+ * dispatched in batches, each batch being evaluated by a single call to EvaluationFunction.evaluateBatch, in which case
+ * the budget of a batch is the sum of the budgets of its Genomes. A Genome whose evaluation overruns its budget is
+ * settled with a penalty fitness, its evaluation is cancelled through its EvaluationContext and its thread
+ * interrupted. The overrunning evaluation no longer counts towards the number of active evaluations, hence the
+ * remaining Genomes continue normally, and waiting for completion never depends on an evaluation that does not respond
+ * to cancellation.
+ *
+ * Once the control signals the end of the run, Genomes are no longer submitted, and running evaluations are cancelled
+ * the same way as overrunning ones: their Genomes are skipped, as are the Genomes of evaluations ending afterwards,
+ * whose results may have been cut short.
+ *
+ * Genomes evaluated through a CaseEvaluationFunction can also be raced (see enableRacing), which spends most of the
+ * evaluation budget on the most promising Genomes, and the evaluation of each Genome can be split into partitions of
+ * cases evaluated in parallel (see setCasePartitionSize), which keeps all threads busy even with few Genomes.
+ *
+ * Worker threads are daemon threads, so an evaluation that never terminates does not prevent the JVM from exiting.
+ *
+ * @author Acemad
+ */
+public class EvaluationScheduler {
+
+    private final EvaluationFunction evaluationFunction;
+    private final EvaluationControl control;
+    private final int batchSize;
+    private final long timeoutNanos;
+    private final double penaltyFitness;
+
+    // Bounds the number of active (not yet settled) evaluations to the number of threads
+    private final Semaphore activeEvaluations;
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    // Number of cases per task when splitting the evaluation of a Genome by a CaseEvaluationFunction, 0: no split
+    private int casePartitionSize = 0;
+
+    // Racing parameters, see enableRacing()
+    private boolean racing = false;
+    private double racingInitialCaseProportion;
+    private double racingEliminationFraction;
+    private double racingGrowthFactor;
+
+    // Number of submitted tasks not yet settled, guarded by this
+    private int pending = 0;
+
+    // Genomes left unevaluated, with a fitness of 0, because the run ended before their turn
+    private final Set<Genome> skippedGenomes =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    // Submitted tasks not yet settled, cancelled once the run ends
+    private final Set<RunningTask> runningTasks = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Creates a scheduler along with its worker threads
+     *
+     * @param evaluationFunction The evaluation function used to evaluate Genomes
+     * @param threads The maximum number of concurrent evaluations, 0 to use all available cores
+     * @param batchSize The number of Genomes evaluated together by evaluateAll, 1 to evaluate Genomes one at a time
+     * @param timeoutSeconds The time budget of each evaluation in seconds, 0 for unlimited
+     * @param penaltyFitness The fitness assigned to Genomes whose evaluation overruns its budget
+     * @param control The termination control of the run, null if none
+     */
+    public EvaluationScheduler(EvaluationFunction evaluationFunction, int threads, int batchSize,
+                               double timeoutSeconds, double penaltyFitness, EvaluationControl control) {
+
+        this.evaluationFunction = evaluationFunction;
+        this.control = control;
+        this.batchSize = Math.max(1, batchSize);
+        this.timeoutNanos = (long) (timeoutSeconds * 1e9);
+        this.penaltyFitness = penaltyFitness;
+
+        int threadsToUse = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        activeEvaluations = new Semaphore(threadsToUse);
+        // Threads of abandoned evaluations are not reused until they return, new ones are created in the meantime
+        workers = Executors.newCachedThreadPool(runnable -> daemonThread(runnable, "evaluation-worker"));
+        watchdog = timeoutNanos > 0 ?
+                new ScheduledThreadPoolExecutor(1, runnable -> daemonThread(runnable, "evaluation-watchdog")) : null;
+        // Timeouts of settled tasks are cancelled, drop them from the queue rather than keeping them until they are due
+        if (watchdog != null) watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Creates a scheduler using the evaluation parameters of the given configuration
+     *
+     * @param evaluationFunction The evaluation function used to evaluate Genomes
+     * @param config The configuration instance containing all parameters
+     * @param control The termination control of the run, null if none
+     */
+    public EvaluationScheduler(EvaluationFunction evaluationFunction, NEATConfig config, EvaluationControl control) {
+        this(evaluationFunction, config.evaluationThreads(), config.evaluationBatchSize(), config.evaluationTimeout(),
+                config.timeoutPenaltyFitness(), control);
+        this.casePartitionSize = config.casePartitionSize();
+        if (config.racingEvaluation())
+            enableRacing(config.racingInitialCaseProportion(), config.racingEliminationFraction(),
+                    config.racingGrowthFactor());
+    }
+
+    private static Thread daemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+    /**
+     * Enables racing for case evaluation functions: all Genomes are first evaluated on a subset of the cases, then the
+     * worst fraction of the Genomes is frozen at its partial fitness while the others are evaluated on a growing
+     * number of cases, until the full set of cases is reached.
+     *
+     * @param initialCaseProportion The proportion of cases of the first round
+     * @param eliminationFraction The fraction of the remaining Genomes frozen after each round
+     * @param growthFactor The factor by which the number of evaluated cases grows after each round
+     */
+    public void enableRacing(double initialCaseProportion, double eliminationFraction, double growthFactor) {
+        this.racing = true;
+        this.racingInitialCaseProportion = initialCaseProportion;
+        this.racingEliminationFraction = eliminationFraction;
+        this.racingGrowthFactor = growthFactor;
+    }
+
+    /**
+     * Sets the number of cases per task when evaluating Genomes through a CaseEvaluationFunction. The evaluation of a
+     * Genome is then split into independent partitions, run on the same threads as other evaluations.
+     * @param casePartitionSize The number of cases per partition, 0 to evaluate each Genome as a single task
+     */
+    public void setCasePartitionSize(int casePartitionSize) {
+        this.casePartitionSize = casePartitionSize;
+    }
+
+    /**
+     * Evaluates all the given Genomes, in batches of batchSize Genomes, and waits for their completion. Genomes are
+     * raced instead when racing is enabled and the evaluation function is a CaseEvaluationFunction.
+     * @param genomes The Genomes to evaluate
+     * @return true if all Genomes were settled, false if the wait was interrupted
+     */
+    public boolean evaluateAll(List<Genome> genomes) {
+        if (racing && evaluationFunction instanceof CaseEvaluationFunction)
+            return race((CaseEvaluationFunction) evaluationFunction, genomes) && awaitCompletion();
+
+        for (int from = 0; from < genomes.size(); from += batchSize)
+            if (!submitBatch(genomes.subList(from, Math.min(from + batchSize, genomes.size())))) break;
+        return awaitCompletion();
+    }
+
+    /**
+     * Races the given Genomes over the cases of the evaluation function. Each round evaluates the remaining Genomes on
+     * the next range of cases, ranks them by the fitness derived from their partial scores, and freezes the worst
+     * racingEliminationFraction of them. Frozen and overrunning Genomes keep the fitness they had when leaving the race.
+     *
+     * @param caseFunction The case evaluation function
+     * @param genomes The Genomes to evaluate
+     * @return true if the race completed, false if it was interrupted
+     */
+    private boolean race(CaseEvaluationFunction caseFunction, List<Genome> genomes) {
+
+        int caseCount = caseFunction.caseCount();
+        double[] partial = new double[genomes.size()];
+        boolean[] overrun = new boolean[genomes.size()];
+
+        List<Integer> survivors = new ArrayList<>();
+        for (int i = 0; i < genomes.size(); i++) survivors.add(i);
+
+        int casesEvaluated = 0;
+        int target = Math.max(1, Math.min(caseCount, (int) Math.ceil(racingInitialCaseProportion * caseCount)));
+
+        while (!survivors.isEmpty() && casesEvaluated < caseCount) {
+
+            // The run is over, the survivors keep their partial fitness, if they had a first round
+            if (control != null && control.shouldStop()) {
+                if (casesEvaluated == 0) {
+                    for (int i : survivors) skip(genomes.get(i));
+                    survivors.clear();
+                }
+                break;
+            }
+
+            // 1. Evaluate the survivors on the cases of this round
+            int from = casesEvaluated, to = target;
+            for (int i : survivors) {
+                boolean submitted = submitCases(caseFunction, genomes.get(i), from, to,
+                        result -> partial[i] = from == 0 ? result : caseFunction.combine(partial[i], result),
+                        () -> overrun[i] = true);
+                if (!submitted) return false;
+            }
+            if (!awaitPending()) return false;
+
+            casesEvaluated = to;
+
+            // Survivors skipped at the end of the run leave the race, with the fitness of their previous round if they
+            // had one
+            survivors.removeIf(i -> {
+                if (!skippedGenomes.contains(genomes.get(i))) return false;
+                if (from > 0) {
+                    skippedGenomes.remove(genomes.get(i));
+                    genomes.get(i).setFitness(caseFunction.fitness(partial[i], from));
+                }
+                return true;
+            });
+
+            // 2. Overrunning genomes leave the race with the penalty fitness, the others are ranked
+            survivors.removeIf(i -> overrun[i]);
+            for (int i : survivors)
+                genomes.get(i).setFitness(caseFunction.fitness(partial[i], casesEvaluated));
+            survivors.sort((i, j) -> Double.compare(genomes.get(j).getFitness(), genomes.get(i).getFitness()));
+
+            // 3. Freeze the worst fraction of the survivors, unless this is the last round
+            if (casesEvaluated < caseCount) {
+                int keep = Math.max(1, (int) Math.ceil((1 - racingEliminationFraction) * survivors.size()));
+                for (int i : survivors.subList(keep, survivors.size()))
+                    if (control != null) control.report(genomes.get(i).getFitness());
+                survivors = new ArrayList<>(survivors.subList(0, keep));
+                target = Math.min(caseCount, Math.max(target + 1, (int) Math.ceil(target * racingGrowthFactor)));
+            }
+        }
+
+        for (int i : survivors) {
+            genomes.get(i).setFitness(caseFunction.fitness(partial[i], casesEvaluated));
+            if (control != null) control.report(genomes.get(i).getFitness());
+        }
+        return true;
+    }
+
+    /**
+     * Submits a Genome for evaluation, blocking while all threads are busy. Once the control signals the end of the
+     * run, the Genome is not evaluated and receives a fitness of 0.
+     *
+     * @param genome The Genome to evaluate
+     * @return true if the Genome was submitted, false if the submission was interrupted
+     */
+    public boolean submit(Genome genome) {
+        return submitBatch(List.of(genome));
+    }
+
+    /**
+     * Submits a batch of Genomes to be evaluated together on a single thread, blocking while all threads are busy.
+     * Once the control signals the end of the run, the Genomes are not evaluated and receive a fitness of 0.
+     *
+     * @param batch The Genomes to evaluate
+     * @return true if the batch was submitted, false if the submission was interrupted
+     */
+    public boolean submitBatch(List<Genome> batch) {
+
+        if (control != null && control.shouldStop()) {
+            batch.forEach(this::skip);
+            return true;
+        }
+
+        // Split the evaluation of a single genome into case partitions
+        if (casePartitionSize > 0 && batchSize == 1 && evaluationFunction instanceof CaseEvaluationFunction) {
+            CaseEvaluationFunction caseFunction = (CaseEvaluationFunction) evaluationFunction;
+            Genome genome = batch.get(0);
+            return submitCases(caseFunction, genome, 0, caseFunction.caseCount(),
+                    partial -> {
+                        genome.setFitness(caseFunction.fitness(partial, caseFunction.caseCount()));
+                        if (control != null) control.report(genome.getFitness());
+                    },
+                    () -> {});
+        }
+
+        return submitTask(batch, batch.size(),
+                context -> {
+                    double[] fitness = new double[batch.size()];
+                    if (batchSize == 1) fitness[0] = evaluationFunction.evaluate(batch.get(0), context);
+                    else evaluationFunction.evaluateBatch(batch, fitness, context);
+                    return fitness;
+                },
+                fitness -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).setFitness(fitness[i]);
+                        if (control != null) control.report(fitness[i]);
+                    }
+                },
+                () -> {});
+    }
+
+    /**
+     * Submits the evaluation of a Genome on a range of cases. If casePartitionSize is set, the range is split into
+     * partitions of casePartitionSize cases, evaluated as independent tasks on the worker threads, alongside the tasks
+     * of other Genomes. The partial scores of the partitions are combined in case order once all of them are done.
+     *
+     * @param caseFunction The case evaluation function
+     * @param genome The Genome to evaluate
+     * @param from The index of the first case
+     * @param to The index following the last case
+     * @param onCompleted Receives the combined partial score of the range if all partitions complete
+     * @param onOverrun Called once if any partition overruns its budget
+     * @return true if all partitions were submitted, false if the submission was interrupted
+     */
+    private boolean submitCases(CaseEvaluationFunction caseFunction, Genome genome, int from, int to,
+                                DoubleConsumer onCompleted, Runnable onOverrun) {
+
+        int caseCount = caseFunction.caseCount();
+        int partitionSize = casePartitionSize > 0 ? casePartitionSize : to - from;
+        int partitions = Math.max(1, (to - from + partitionSize - 1) / partitionSize);
+
+        double[] partials = new double[partitions];
+        AtomicInteger remaining = new AtomicInteger(partitions);
+        AtomicBoolean overrun = new AtomicBoolean(false);
+
+        for (int k = 0; k < partitions; k++) {
+            int partition = k;
+            int partitionFrom = from + k * partitionSize, partitionTo = Math.min(to, partitionFrom + partitionSize);
+            boolean submitted = submitTask(List.of(genome), (double) (partitionTo - partitionFrom) / caseCount,
+                    context -> new double[] {caseFunction.evaluateCases(genome, partitionFrom, partitionTo, context)},
+                    result -> {
+                        partials[partition] = result[0];
+                        // The last partition to complete combines the partial scores, in case order
+                        if (remaining.decrementAndGet() == 0) {
+                            double partial = partials[0];
+                            for (int i = 1; i < partitions; i++)
+                                partial = caseFunction.combine(partial, partials[i]);
+                            onCompleted.accept(partial);
+                        }
+                    },
+                    () -> {
+                        if (overrun.compareAndSet(false, true)) onOverrun.run();
+                    });
+            if (!submitted) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A unit of evaluation work, computing one value per Genome
+     */
+    private interface Task {
+        double[] run(EvaluationContext context) throws Exception;
+    }
+
+    /**
+     * Submits a task to the worker threads, blocking while all threads are busy. The task is settled exactly once:
+     * either it completes within its budget and its result is passed to onCompleted, or it overruns, in which case its
+     * Genomes receive the penalty fitness, onOverrun is called and the task is cancelled, or the run ends first, in
+     * which case its Genomes are skipped and the task is cancelled. A task failing with an exception or an error
+     * completes with a result of 0 for each Genome.
+     *
+     * @param genomes The Genomes concerned by the task
+     * @param budget The time budget of the task, in number of Genome evaluation budgets
+     * @param task The task to run
+     * @param onCompleted Receives the result of the task if it completes
+     * @param onOverrun Called if the task overruns its budget
+     * @return true if the task was submitted, false if the submission was interrupted
+     */
+    private boolean submitTask(List<Genome> genomes, double budget, Task task, Consumer<double[]> onCompleted,
+                               Runnable onOverrun) {
+
+        if (control != null && control.shouldStop()) {
+            genomes.forEach(this::skip);
+            return true;
+        }
+
+        try {
+            activeEvaluations.acquire();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        synchronized (this) {
+            pending++;
+        }
+
+        long taskTimeoutNanos = (long) (timeoutNanos * budget);
+        RunningTask running = new RunningTask(genomes, new EvaluationContext(taskTimeoutNanos, control));
+        runningTasks.add(running);
+        running.evaluation = workers.submit(() -> {
+            double[] result = null;
+            try {
+                result = task.run(running.context);
+            } catch (Throwable throwable) {
+                // Errors too (e.g. a StackOverflowError from a huge network), the task must be settled regardless.
+                // Cancelled evaluations may end with an exception
+                if (!running.settled.get()) throwable.printStackTrace();
+            }
+
+            // The run is over, the result may have been cut short: skip this task along with the other running ones
+            if (control != null && control.shouldStop()) {
+                cancelRunningTasks();
+                return;
+            }
+            if (running.settle()) {
+                try {
+                    onCompleted.accept(result != null ? result : new double[genomes.size()]);
+                } finally {
+                    release();
+                }
+            }
+            // This result ended the run
+            if (control != null && control.shouldStop()) cancelRunningTasks();
+        });
+
+        if (watchdog != null) {
+            running.timeout = watchdog.schedule(() -> {
+                if (running.settle()) {
+                    // Overrun: assign the penalty and cancel the evaluation, without waiting for it to return
+                    genomes.forEach(genome -> genome.setFitness(penaltyFitness));
+                    onOverrun.run();
+                    running.cancel();
+                }
+            }, Math.max(1, taskTimeoutNanos), TimeUnit.NANOSECONDS);
+            // The task may have been settled before its timeout was set
+            if (running.settled.get()) running.timeout.cancel(false);
+        }
+
+        return true;
+    }
+
+    /**
+     * A submitted task, running or waiting for a thread, until it is settled
+     */
+    private class RunningTask {
+
+        private final List<Genome> genomes;
+        private final EvaluationContext context;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        private volatile Future<?> evaluation;              // Null until submitted to the workers
+        private volatile ScheduledFuture<?> timeout;        // The overrun check, null until scheduled or if no budget
+
+        private RunningTask(List<Genome> genomes, EvaluationContext context) {
+            this.genomes = genomes;
+            this.context = context;
+        }
+
+        /**
+         * Settles the task, unless already settled, and cancels its overrun check
+         * @return true if the task was settled by this call
+         */
+        private boolean settle() {
+            if (!settled.compareAndSet(false, true)) return false;
+            runningTasks.remove(this);
+            if (timeout != null) timeout.cancel(false);
+            return true;
+        }
+
+        /**
+         * Cancels the settled task without waiting for it to return, its thread is no longer counted as active
+         */
+        private void cancel() {
+            context.cancel();
+            if (evaluation != null) evaluation.cancel(true);
+            release();
+        }
+    }
+
+    /**
+     * Skips the Genomes of the tasks not yet settled, and cancels the tasks. Called once the run is over
+     */
+    private void cancelRunningTasks() {
+        List<RunningTask> tasks;
+        synchronized (runningTasks) {
+            tasks = new ArrayList<>(runningTasks);
+        }
+        for (RunningTask task : tasks)
+            if (task.settle()) {
+                task.genomes.forEach(this::skip);
+                task.cancel();
+            }
+    }
+
+    /**
+     * Leaves a Genome unevaluated, with a fitness of 0
+     */
+    private void skip(Genome genome) {
+        genome.setFitness(0);
+        skippedGenomes.add(genome);
+    }
+
+    /**
+     * Returns the Genomes left unevaluated because the control signaled the end of the run before their turn. They
+     * have a fitness of 0, which is not theirs
+     * @return The skipped Genomes, compared by reference
+     */
+    public Set<Genome> getSkippedGenomes() {
+        return skippedGenomes;
+    }
+
+    /**
+     * Marks a submitted task as settled
+     */
+    private void release() {
+        activeEvaluations.release();
+        synchronized (this) {
+            if (--pending == 0) notifyAll();
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks are settled
+     * @return true if all tasks were settled, false if the wait was interrupted
+     */
+    private boolean awaitPending() {
+        try {
+            synchronized (this) {
+                while (pending > 0) wait();
+            }
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until all submitted Genomes are settled, then shuts the scheduler down
+     * @return true if all Genomes were settled, false if the wait was interrupted
+     */
+    public boolean awaitCompletion() {
+        try {
+            return awaitPending();
+        } finally {
+            // Abandoned evaluations are interrupted, the others are done
+            workers.shutdownNow();
+            if (watchdog != null) watchdog.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package engine;
+
+import encoding.Genome;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs an experiment made of several independent ANEAT runs, executed concurrently on a bounded pool of
+ * experimentThreads threads. The experiment repeats runsPerPoint runs for each point of an optional parameter grid, the
+ * cartesian product of the values given to addParameter, which replace those of the configuration file.
+ *
+ * Runs share nothing: each has its own configuration instance, population and innovation database, and draws from its
+ * own random stream seeded with the seed of the experiment plus the index of the run, hence an experiment, or any of
+ * its runs, can be reproduced from the seeds found in the report. Each run appends one row to the report as soon as it
+ * ends, flushed so it can be followed while the experiment is going. The evaluation threads of the configuration are
+ * divided among the concurrent runs.
+ *
+ * @author Acemad
+ */
+public class ExperimentRunner {
+
+    private final String configFile;
+    private final int runsPerPoint;
+    private final Map<String, List<String>> grid = new LinkedHashMap<>(); // Parameter values, in columns order
+    private long seed;
+    private boolean seeded;                                                // Otherwise the seed is drawn at random
+
+    private CSVPrinter report;                                             // Open while the experiment runs
+
+    /**
+     * Creates an experiment repeating runsPerPoint runs of the configuration in the given file
+     *
+     * @param configFile The path to a NEATConfig parameter file
+     * @param runsPerPoint The number of runs of each point of the parameter grid (of the configuration if no grid)
+     */
+    public ExperimentRunner(String configFile, int runsPerPoint) {
+        this.configFile = configFile;
+        this.runsPerPoint = runsPerPoint;
+    }
+
+    /**
+     * Adds a dimension to the parameter grid, every run of the experiment uses one of the given values of the parameter
+     *
+     * @param name The name of the parameter, as found in the configuration file
+     * @param values The values taken by the parameter
+     * @return This runner
+     */
+    public ExperimentRunner addParameter(String name, Object... values) {
+        List<String> strings = new ArrayList<>(values.length);
+        for (Object value : values) strings.add(String.valueOf(value));
+        grid.put(name, strings);
+        return this;
+    }
+
+    /**
+     * Sets the seed of the experiment, run i draws its random numbers from a stream seeded with seed + i
+     *
+     * @param seed The seed of the experiment
+     * @return This runner
+     */
+    public ExperimentRunner setSeed(long seed) {
+        this.seed = seed;
+        seeded = true;
+        return this;
+    }
+
+    /**
+     * Runs every run of the experiment, and waits for all of them to end. The report gets one row per run, in the
+     * order runs end. If baseFileName is not null, run i saves its files under baseFileName + "Run" + i (see ANEAT.run)
+     *
+     * @param fitnessFunction The function used for evaluating the quality of solutions, called concurrently by runs
+     * @param generations The maximum number of generations of each run
+     * @param reportFile The CSV file receiving the results of runs
+     * @param baseFileName Base name of the files saved by runs, null for no files
+     * @return The results of the runs which ended normally, ordered by run index
+     */
+    public List<RunResult> run(EvaluationFunction fitnessFunction, int generations, String reportFile,
+                               String baseFileName) {
+
+        List<Map<String, String>> points = gridPoints();
+        long experimentSeed = seeded ? seed : PRNG.newStream().nextLong();
+
+        // One thread per run at most, as given by the configuration with the values of the first point
+        int threads = new NEATConfig(configFile, points.get(0)).experimentThreads();
+        if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, points.size() * runsPerPoint));
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        int concurrentRuns = threads;
+
+        List<RunResult> results = new ArrayList<>();
+        try {
+            openReport(reportFile);
+
+            List<Future<RunResult>> runs = new ArrayList<>();
+            for (int p = 0; p < points.size(); p++)
+                for (int r = 0; r < runsPerPoint; r++) {
+                    int index = p * runsPerPoint + r;
+                    Map<String, String> point = points.get(p);
+                    runs.add(executorService.submit(() -> runOnce(index, point, concurrentRuns, experimentSeed + index,
+                            fitnessFunction, generations, baseFileName == null ? null : baseFileName + "Run" + index)));
+                }
+
+            for (Future<RunResult> run : runs) {
+                try {
+                    results.add(run.get());
+                } catch (ExecutionException exception) {
+                    exception.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        } finally {
+            executorService.shutdownNow();
+            closeReport();
+        }
+        return results;
+    }
+
+    /**
+     * Performs one run on the calling thread, bound to its own random stream, and reports its result. The run evaluates
+     * on its share of the evaluation threads, among concurrentRuns runs.
+     */
+    private RunResult runOnce(int index, Map<String, String> point, int concurrentRuns, long runSeed,
+                              EvaluationFunction fitnessFunction, int generations, String baseFileName)
+            throws IOException {
+
+        PRNG.bindToCurrentThread(PRNG.newStream(runSeed));
+        try {
+            long start = System.nanoTime();
+            Map<String, String> overrides = new HashMap<>(point);
+            overrides.put("evaluationThreads", String.valueOf(
+                    new NEATConfig(configFile, point).evaluationThreadsShare(concurrentRuns)));
+
+            // The initial population is drawn from the stream of the run, hence created on its thread
+            ANEAT aneat = new ANEAT(new NEATConfig(configFile, overrides));
+            aneat.setVerbose(false);
+            aneat.run(fitnessFunction, generations, baseFileName);
+
+            RunResult result = new RunResult(index, point, runSeed, aneat.getEvolutionStats().getGenerationCount(),
+                    aneat.getBestGenome(), (System.nanoTime() - start) / 1e9);
+            report(result);
+            return result;
+        } finally {
+            PRNG.unbindFromCurrentThread();
+        }
+    }
+
+    /**
+     * @return The points of the parameter grid, a single empty point if no parameter was added
+     */
+    private List<Map<String, String>> gridPoints() {
+        List<Map<String, String>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        for (Map.Entry<String, List<String>> parameter : grid.entrySet()) {
+            List<Map<String, String>> extended = new ArrayList<>();
+            for (Map<String, String> point : points)
+                for (String value : parameter.getValue()) {
+                    Map<String, String> next = new LinkedHashMap<>(point);
+                    next.put(parameter.getKey(), value);
+                    extended.add(next);
+                }
+            points = extended;
+        }
+        return points;
+    }
+
+    private synchronized void openReport(String reportFile) throws IOException {
+        report = new CSVPrinter(new FileWriter(reportFile), CSVFormat.EXCEL);
+        List<String> header = new ArrayList<>(List.of("run"));
+        header.addAll(grid.keySet());
+        header.addAll(List.of("seed", "generations", "bestFitness", "bestGenomeId", "hiddenNodes", "links", "seconds"));
+        report.printRecord(header);
+        report.flush();
+    }
+
+    /**
+     * Appends the row of a run to the report, and prints it to the standard output
+     */
+    private synchronized void report(RunResult result) throws IOException {
+        List<Object> row = new ArrayList<>(List.of(result.index));
+        row.addAll(result.parameters.values());
+        row.addAll(List.of(result.seed, result.generations, result.bestGenome.getFitness(),
+                result.bestGenome.getId(), result.bestGenome.getHiddenNodeGenes().size(),
+                result.bestGenome.getLinkGenes().size(), result.seconds));
+        report.printRecord(row);
+        report.flush();
+
+        System.out.println("Run: " + String.format("%-4d", result.index) +
+                (result.parameters.isEmpty() ? "" : " | " + result.parameters) +
+                " | Gens: " + String.format("%-4d", result.generations) +
+                " | Top Fitness: " + result.bestGenome.getFitness() +
+                " | Best Genome: " + result.bestGenome.toConciseString());
+    }
+
+    private synchronized void closeReport() {
+        try {
+            if (report != null) report.close();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+        report = null;
+    }
+
+    /**
+     * The outcome of one run of an experiment
+     */
+    public static class RunResult {
+
+        private final int index;                            // Index of the run in the experiment
+        private final Map<String, String> parameters;       // The grid point of the run
+        private final long seed;                            // Seed of the random stream of the run
+        private final int generations;                      // Generations actually taken
+        private final Genome bestGenome;                    // Best genome of the last population
+        private final double seconds;                       // Wall-clock duration of the run
+
+        RunResult(int index, Map<String, String> parameters, long seed, int generations, Genome bestGenome,
+                  double seconds) {
+            this.index = index;
+            this.parameters = parameters;
+            this.seed = seed;
+            this.generations = generations;
+            this.bestGenome = bestGenome;
+            this.seconds = seconds;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Map<String, String> getParameters() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getGenerations() {
+            return generations;
+        }
+
+        public Genome getBestGenome() {
+            return bestGenome;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package engine;
+
+import encoding.CompactGenomeCodec;
+import encoding.Genome;
+import util.BinaryInput;
+import util.BinaryOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * An append-only archive of the best Genome of each generation of a run (hall of fame). The Genomes are appended to a
+ * data file, each in the format of CompactGenomeCodec preceded by its own dictionaries, and each generation appends
+ * one fixed width entry to an index file: generation, Genome id, fitness, then offset and length of the Genome in the
+ * data file. A Genome remaining the best over several generations, or becoming the best again shortly after, is
+ * written once, its entries sharing the offset. As the champion is carried over as an elite copy with a new id, the
+ * best Genome is compared, by structure and weights, with the last RECENT_GENOMES distinct Genomes archived.
+ *
+ * Reading maps both files in memory: entries are accessed at random, and the best entries are found by scanning the
+ * index only. Genomes are decoded on request, their genes on first access.
+ *
+ * Data file layout: magic number, version (int), then the Genomes. Index file layout: magic number, version (int),
+ * then the entries: generation (int), Genome id (int), fitness (double), offset (long), length (int).
+ *
+ * @author Acemad
+ */
+public class HallOfFame implements Closeable {
+
+    // "ANEATHOF" magic number of both files, and version
+    private static final long FILE_MAGIC = 0x414E454154484F46L;
+    private static final int FILE_VERSION = 1;
+
+    // Number of distinct Genomes, the last archived, a new best Genome is compared with before being written
+    private static final int RECENT_GENOMES = 8;
+
+    private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int ENTRY_BYTES = 28;
+
+    // Positions of the fields within an index entry
+    private static final int GENERATION = 0;
+    private static final int GENOME_ID = 4;
+    private static final int FITNESS = 8;
+    private static final int OFFSET = 16;
+    private static final int LENGTH = 24;
+
+    private final ByteBuffer index;
+    private final FileChannel dataChannel;
+    private final ByteBuffer data;                          // Null if the data file is too large to be mapped at once
+    private final int size;
+
+    private HallOfFame(ByteBuffer index, FileChannel dataChannel, ByteBuffer data, int size) {
+        this.index = index;
+        this.dataChannel = dataChannel;
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Opens the hall of fame of a run for reading. Entries appended afterwards, by a run still going, are not seen
+     *
+     * @param baseFileName The base file name of the run
+     * @return The hall of fame
+     * @throws IOException If the files are missing or are not hall of fame files
+     */
+    public static HallOfFame open(String baseFileName) throws IOException {
+
+        ByteBuffer index;
+        try (FileChannel indexChannel = FileChannel.open(indexFile(baseFileName), StandardOpenOption.READ)) {
+            if (indexChannel.size() > Integer.MAX_VALUE)
+                throw new IOException("Hall of fame index too large: " + indexFile(baseFileName));
+            index = indexChannel.map(MapMode.READ_ONLY, 0, indexChannel.size());
+        }
+        FileChannel dataChannel = FileChannel.open(dataFile(baseFileName), StandardOpenOption.READ);
+        try {
+            if (!hasHeader(index) || !hasHeader(dataChannel))
+                throw new IOException("Not a hall of fame: " + baseFileName);
+            long dataSize = dataChannel.size();
+            ByteBuffer data = dataSize <= Integer.MAX_VALUE ? dataChannel.map(MapMode.READ_ONLY, 0, dataSize) : null;
+
+            // Entries cut short, or whose Genome was cut short, were being written when the run stopped
+            int size = (index.limit() - HEADER_BYTES) / ENTRY_BYTES;
+            while (size > 0 && endOf(index, size - 1) > dataSize) size--;
+            return new HallOfFame(index, dataChannel, data, size);
+        } catch (IOException exception) {
+            dataChannel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the number of entries, one per archived generation
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getGeneration(int entry) {
+        return index.getInt(position(entry) + GENERATION);
+    }
+
+    public int getGenomeId(int entry) {
+        return index.getInt(position(entry) + GENOME_ID);
+    }
+
+    public double getFitness(int entry) {
+        return index.getDouble(position(entry) + FITNESS);
+    }
+
+    /**
+     * Returns the Genome of an entry. Its genes are decoded on first access. Entries sharing a Genome return it with
+     * the id of the first of them
+     *
+     * @param entry The index of the entry
+     * @return The Genome
+     * @throws IOException If the Genome cannot be read
+     */
+    public Genome getGenome(int entry) throws IOException {
+
+        int position = position(entry);
+        long offset = index.getLong(position + OFFSET);
+        int length = index.getInt(position + LENGTH);
+        ByteBuffer genome = data != null ? data.slice((int) offset, length) :
+                dataChannel.map(MapMode.READ_ONLY, offset, length);
+
+        BinaryInput in = new BinaryInput(genome);
+        CompactGenomeCodec codec = CompactGenomeCodec.readDictionaries(in);
+        ByteBuffer genes = in.require(0);
+        return codec.decodeLazily(genes, genes.remaining());
+    }
+
+    /**
+     * Returns the entry of the given generation, found by binary search as generations are in increasing order
+     *
+     * @param generation The generation
+     * @return The index of the entry, -1 if the generation isn't archived
+     */
+    public int indexOfGeneration(int generation) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleGeneration = getGeneration(middle);
+            if (middleGeneration < generation) low = middle + 1;
+            else if (middleGeneration > generation) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the k entries of highest fitness, each Genome counted once, from the index alone
+     *
+     * @param k The number of entries
+     * @return The indexes of the entries, by decreasing fitness
+     */
+    public int[] getTopEntries(int k) {
+
+        // The best entries found so far, the worst of them first
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingDouble(this::getFitness));
+        Set<Long> offsets = new HashSet<>();
+        for (int entry = 0; entry < size; entry++) {
+            // Entries of a Genome archived several times share its offset, only the first is kept
+            if (!offsets.add(index.getLong(position(entry) + OFFSET)))
+                continue;
+            top.add(entry);
+            if (top.size() > k) top.poll();
+        }
+
+        int[] entries = new int[top.size()];
+        for (int i = entries.length - 1; i >= 0; i--) entries[i] = top.poll();
+        return entries;
+    }
+
+    /**
+     * Returns the k Genomes of highest fitness in the hall of fame, e.g. for analysing a run or seeding another
+     *
+     * @param k The number of Genomes
+     * @return The Genomes, by decreasing fitness
+     * @throws IOException If a Genome cannot be read
+     */
+    public List<Genome> getTopGenomes(int k) throws IOException {
+        List<Genome> genomes = new ArrayList<>();
+        for (int entry : getTopEntries(k)) genomes.add(getGenome(entry));
+        return genomes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataChannel.close();
+    }
+
+    private int position(int entry) {
+        if (entry < 0 || entry >= size) throw new IndexOutOfBoundsException(entry);
+        return HEADER_BYTES + entry * ENTRY_BYTES;
+    }
+
+    // Position in the data file of the end of the Genome of an entry
+    private static long endOf(ByteBuffer index, int entry) {
+        int position = HEADER_BYTES + entry * ENTRY_BYTES;
+        return index.getLong(position + OFFSET) + index.getInt(position + LENGTH);
+    }
+
+    private static boolean hasHeader(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_BYTES && buffer.getLong(0) == FILE_MAGIC &&
+                buffer.getInt(Long.BYTES) == FILE_VERSION;
+    }
+
+    private static boolean hasHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        return hasHeader(header.flip());
+    }
+
+    private static Path dataFile(String baseFileName) {
+        return Path.of(baseFileName + "HallOfFame");
+    }
+
+    private static Path indexFile(String baseFileName) {
+        return Path.of(baseFileName + "HallOfFame.idx");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    /**
+     * An encoded entry, waiting to be written
+     */
+    static class Entry {
+        private final int generation;
+        private final int genomeId;
+        private final double fitness;
+        private final byte[] genome;                        // Null if identical to a recently archived Genome
+        private final int recent;                           // Which one, 0 being the last, if genome is null
+
+        private Entry(int generation, int genomeId, double fitness, byte[] genome, int recent) {
+            this.generation = generation;
+            this.genomeId = genomeId;
+            this.fitness = fitness;
+            this.genome = genome;
+            this.recent = recent;
+        }
+    }
+
+    /**
+     * Appends the entries of a run to its hall of fame. Entries are encoded on the thread running the evolution, and
+     * written on another (see Checkpointer). The files are opened on the first write: a resumed run drops the entries
+     * of the generations it runs again, a new run replaces the files.
+     */
+    static class Writer implements Closeable {
+
+        private final String baseFileName;
+        private FileChannel data;                           // Opened on the first write
+        private FileChannel index;
+
+        // The last distinct Genomes encoded, not encoded again if an identical copy becomes the best, the last first.
+        // Used on the evolution thread
+        private final LinkedList<Genome> recentGenomes = new LinkedList<>();
+
+        // Positions (offset, length) of the same Genomes once written, negative offset if writing failed. Used on the
+        // writing thread
+        private final LinkedList<long[]> recentPositions = new LinkedList<>();
+
+        /**
+         * Creates a writer to the hall of fame of the given run
+         * @param baseFileName The base file name of the run
+         */
+        Writer(String baseFileName) {
+            this.baseFileName = baseFileName;
+        }
+
+        /**
+         * Encodes the entry of a generation. The Genome is left out when it's identical to a recently archived one,
+         * e.g. the elite copy of the previous best
+         *
+         * @param generation The generation
+         * @param genome The best Genome of the generation
+         * @return The encoded entry, to be written by write
+         * @throws IOException If encoding fails
+         */
+        Entry encode(int generation, Genome genome) throws IOException {
+            int recent = 0;
+            for (Genome recentGenome : recentGenomes) {
+                if (genome.isIdenticalTo(recentGenome))
+                    return new Entry(generation, genome.getId(), genome.getFitness(), null, recent);
+                recent++;
+            }
+            remember(recentGenomes, genome);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (BinaryOutput out = new BinaryOutput(Channels.newChannel(bytes))) {
+                CompactGenomeCodec codec = CompactGenomeCodec.forGenomes(List.of(genome), false);
+                codec.writeDictionaries(out);
+                out.putBytes(codec.encode(genome));
+            }
+            return new Entry(generation, genome.getId(), genome.getFitness(), bytes.toByteArray(), -1);
+        }
+
+        /**
+         * Appends an encoded entry: its Genome to the data file, unless already written by a recent entry, then
+         * the entry to the index, hence an index entry never refers to a Genome not fully written.
+         *
+         * @param entry The entry to append
+         * @throws IOException If writing fails
+         */
+        void write(Entry entry) throws IOException {
+
+            if (index == null) open(entry.generation);
+
+            long[] position;
+            if (entry.genome != null) {
+                // Remembered before writing, so the positions stay in step with the encoded Genomes if writing fails
+                position = new long[] {-1, entry.genome.length};
+                remember(recentPositions, position);
+                long offset = data.size();
+                writeFully(data, ByteBuffer.wrap(entry.genome), offset);
+                position[0] = offset;
+            } else {
+                position = recentPositions.get(entry.recent);
+                if (position[0] < 0)
+                    throw new IOException("Genome of generation " + entry.generation + " lost with a previous entry");
+            }
+            ByteBuffer row = ByteBuffer.allocate(ENTRY_BYTES).putInt(entry.generation).putInt(entry.genomeId)
+                    .putDouble(entry.fitness).putLong(position[0]).putInt((int) position[1]).flip();
+            writeFully(index, row, index.size());
+        }
+
+        /**
+         * Opens the files, keeping only the complete entries of the generations preceding the given one
+         */
+        private void open(int firstGeneration) throws IOException {
+
+            data = FileChannel.open(dataFile(baseFileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            index = FileChannel.open(indexFile(baseFileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            long count = 0;
+            long dataEnd = HEADER_BYTES;
+            if (hasHeader(data) && hasHeader(index)) {
+                ByteBuffer row = ByteBuffer.allocate(ENTRY_BYTES);
+                for (count = (index.size() - HEADER_BYTES) / ENTRY_BYTES; count > 0; count--) {
+                    readFully(index, row.clear(), HEADER_BYTES + (count - 1) * ENTRY_BYTES);
+                    long end = row.getLong(OFFSET) + row.getInt(LENGTH);
+                    if (row.getInt(GENERATION) < firstGeneration && end <= data.size()) break;
+                }
+
+                // Entries may refer to earlier Genomes, the data ends with the furthest Genome of the kept entries
+                ByteBuffer rows = ByteBuffer.allocate((int) (count * ENTRY_BYTES));
+                readFully(index, rows, HEADER_BYTES);
+                for (int position = 0; position < rows.limit(); position += ENTRY_BYTES)
+                    dataEnd = Math.max(dataEnd, rows.getLong(position + OFFSET) + rows.getInt(position + LENGTH));
+            } else {
+                for (FileChannel channel : new FileChannel[] {data, index}) {
+                    channel.truncate(0);
+                    writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putLong(FILE_MAGIC).putInt(FILE_VERSION)
+                            .flip(), 0);
+                }
+            }
+            index.truncate(HEADER_BYTES + count * ENTRY_BYTES);
+            data.truncate(dataEnd);
+        }
+
+        // Adds an element to the front of a recent list, dropping the oldest beyond RECENT_GENOMES
+        private static <T> void remember(LinkedList<T> recent, T element) {
+            recent.addFirst(element);
+            if (recent.size() > RECENT_GENOMES) recent.removeLast();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (index == null) return;
+            try {
+                index.close();
+            } finally {
+                data.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package engine;
+
+import encoding.Genome;
+import engine.stats.EvolutionStats;
+import innovation.InnovationDB;
+import org.apache.commons.rng.UniformRandomProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * An island model evolution runner: evolves several independent populations (islands) concurrently, each on its own
+ * thread with its own random number stream, species, search phase, compatibility threshold and statistics. All islands
+ * share one read-only configuration instance. Every migrationInterval generations, the leaders of the migrationSize
+ * best species of each island are copied to another island, where they replace distinct members of the new generation,
+ * never an elite. Islands are connected through a ring (island i sends to island i+1) or a random topology (each island
+ * sends to a different random island at each migration).
+ *
+ * All islands share one thread-safe innovation database, hence a given structure has the same innovation id on every
+ * island, and migrants can be speciated and crossed over without remapping. Islands evolve in lockstep: migration
+ * happens once all islands have completed the same generation. The evaluation threads of the configuration are divided
+ * among the islands, which evaluate their generations at the same time.
+ *
+ * @author Acemad
+ */
+public class IslandEvolution {
+
+    // The configuration shared by all islands, which keep their own phase and compatibility threshold
+    private final NEATConfig config;
+    private final List<Population> islands = new ArrayList<>();
+    private final List<EvolutionStats> islandStats = new ArrayList<>();
+    private final List<UniformRandomProvider> islandRandoms = new ArrayList<>();
+
+    private final InnovationDB innovationDB;
+
+    /**
+     * Creates islandCount islands out of the given configuration file
+     * @param configFile The path to a NEATConfig parameter file
+     */
+    public IslandEvolution(String configFile) {
+
+        // Each island evaluates on its share of the evaluation threads, not on all of them
+        NEATConfig fileConfig = new NEATConfig(configFile);
+        config = new NEATConfig(configFile, Map.of("evaluationThreads",
+                String.valueOf(fileConfig.evaluationThreadsShare(fileConfig.islandCount()))));
+        innovationDB = new InnovationDB(config.numInput(), config.numOutput(), config.includeBias(),
+                config.defaultActivationType(), config.weightRangeMin(), config.weightRangeMax());
+
+        for (int i = 0; i < config.islandCount(); i++) {
+            UniformRandomProvider islandRandom = PRNG.newStream();
+
+            // The initial population of the island is drawn from the island's stream
+            PRNG.bindToCurrentThread(islandRandom);
+            try {
+                islands.add(new Population(config, innovationDB));
+            } finally {
+                PRNG.unbindFromCurrentThread();
+            }
+            islandStats.add(new EvolutionStats());
+            islandRandoms.add(islandRandom);
+        }
+    }
+
+    /**
+     * Evolves all islands concurrently for the given number of generations, migrating genomes between islands every
+     * migrationInterval generations. The run ends early once a genome of any island reaches the target fitness, or
+     * when the time budget is exhausted.
+     *
+     * @param fitnessFunction The function used for evaluating the quality of solutions
+     * @param generations The number of generations to take
+     */
+    public void run(EvaluationFunction fitnessFunction, int generations) {
+
+        EvaluationControl control = new EvaluationControl(config);
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(islands.size(), Runtime.getRuntime().availableProcessors()));
+
+        try {
+            for (int gen = 1; gen <= generations; gen++) {
+
+                // Evolve each island for one generation, each on its own thread and random stream
+                List<Callable<Boolean>> steps = new ArrayList<>();
+                for (int i = 0; i < islands.size(); i++) {
+                    int island = i;
+                    steps.add(() -> {
+                        PRNG.bindToCurrentThread(islandRandoms.get(island));
+                        try {
+                            return islands.get(island).evolve(fitnessFunction, config,
+                                    islandStats.get(island), control);
+                        } finally {
+                            PRNG.unbindFromCurrentThread();
+                        }
+                    });
+                }
+
+                boolean proceed = true;
+                for (Future<Boolean> step : executorService.invokeAll(steps))
+                    proceed &= step.get();
+
+                printStatus(gen, proceed ? generations : gen);
+                if (!proceed) break;
+
+                if (islands.size() > 1 && config.migrationInterval() > 0 && gen % config.migrationInterval() == 0)
+                    migrate(config);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            exception.printStackTrace();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Sends the leaders of the migrationSize best species of each island to its destination island. All emigrants are
+     * selected before any island receives immigrants, so a genome migrates at most once per migration.
+     *
+     * @param config The configuration holding the migration parameters
+     */
+    private void migrate(NEATConfig config) {
+
+        List<List<Genome>> emigrants = new ArrayList<>();
+        for (Population island : islands)
+            emigrants.add(island.getTopSpeciesLeaders(config.migrationSize()));
+
+        for (int i = 0; i < islands.size(); i++) {
+            int destination;
+            if (config.migrationTopology().equals("random")) {
+                destination = PRNG.nextInt(islands.size() - 1);
+                if (destination >= i) destination++; // Any island but the source
+            } else
+                destination = (i + 1) % islands.size();
+
+            // Immigrants replace members drawn from the destination's stream
+            PRNG.bindToCurrentThread(islandRandoms.get(destination));
+            try {
+                islands.get(destination).receiveImmigrants(emigrants.get(i));
+            } finally {
+                PRNG.unbindFromCurrentThread();
+            }
+        }
+    }
+
+    /**
+     * Prints the status of the evolution to the standard output
+     *
+     * @param generation The current generation
+     * @param maxGenerations The maximum number of generations
+     */
+    private void printStatus(int generation, int maxGenerations) {
+        int species = 0;
+        for (Population island : islands) species += island.getSpeciesCount();
+        String status = "Gen: " + String.format("%-4d", generation) +
+                " | Islands: " + islands.size() +
+                " | Top Fitness: " + getBestGenome().getFitness() +
+                " | Species Num: " + species +
+                " | Hidden Nodes: " + innovationDB.getHiddenNodeIds().size();
+        System.out.print(status + (generation == maxGenerations ? "\n" : "\r"));
+    }
+
+    /**
+     * Returns the best genome across all islands
+     *
+     * @return The best genome found
+     */
+    public Genome getBestGenome() {
+        Genome best = islands.get(0).getBestGenome();
+        for (Population island : islands)
+            if (island.getBestGenome().getFitness() > best.getFitness())
+                best = island.getBestGenome();
+        return best;
+    }
+
+    public List<Population> getIslands() {
+        return islands;
+    }
+
+    public List<EvolutionStats> getIslandStats() {
+        return islandStats;
+    }
+
+    public InnovationDB getInnovations() {
+        return innovationDB;
+    }
+}
@@ -0,0 +1,187 @@
+package engine;
+
+import encoding.Genome;
+import encoding.GenomeFingerprint;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * The leaders of a list of species, and the search for the first one a Genome is compatible with, used during
+ * speciation. Genomes and leaders are compared through a view (the Genome itself, or its fingerprint), computed once.
+ * Leaders may be indexed by a SpeciesIndex, in which case the candidate leaders are tested first.
+ *
+ * With lineage enabled, a Genome is first tested against the leader of the species of its parents, and joins it if
+ * compatible, which places most offspring after a single comparison. Exact copies of that leader (e.g. elitist clones)
+ * join it without any comparison. Otherwise, the number of unmatched links between the Genome and the parents' leader,
+ * together with the number of unmatched links between that leader and the others, gives a lower bound of the number of
+ * unmatched links between the Genome and the other leaders (triangle inequality), hence of their compatibility score:
+ * leaders that are too far away by this bound are skipped without comparison. Leader to leader counts, and the
+ * fingerprints of leaders, are memoized by leader ids, in maps that outlive the search since leaders often survive
+ * between generations. Views that are already fingerprints are used as such.
+ *
+ * Once all leaders are added, searches can run concurrently.
+ *
+ * @author Acemad
+ */
+class LeaderSearch<T> {
+
+    private final Function<Genome, T> view;
+    private final BiPredicate<T, T> compatibility;
+    private final double unmatchedCoeff;
+    private final double compatibilityThreshold;
+
+    private final List<Genome> leaders = new ArrayList<>();
+    private final List<T> leaderViews = new ArrayList<>();
+    private final SpeciesIndex index;                         // Null if leaders are not indexed
+
+    // Lineage, null if disabled
+    private final Map<Integer, Integer> positionsBySpeciesId;
+    private final List<GenomeFingerprint> leaderFingerprints;
+    private final Map<Integer, GenomeFingerprint> fingerprintsByLeaderId;
+    private final Map<Long, Integer> leaderDistances;
+
+    /**
+     * Creates an empty search
+     *
+     * @param view Computes the view of a Genome used for compatibility tests
+     * @param compatibility Tests the compatibility between the view of a Genome and the view of a leader
+     * @param config The configuration instance containing all parameter values
+     * @param compatibilityThreshold The current compatibility threshold of the population
+     * @param leaderDistances The memo of unmatched links between leaders, to enable lineage, null to disable it
+     * @param fingerprintsByLeaderId The memo of the fingerprints of leaders, null if lineage is disabled
+     */
+    LeaderSearch(Function<Genome, T> view, BiPredicate<T, T> compatibility, NEATConfig config,
+                 double compatibilityThreshold, Map<Long, Integer> leaderDistances,
+                 Map<Integer, GenomeFingerprint> fingerprintsByLeaderId) {
+
+        this.view = view;
+        this.compatibility = compatibility;
+        this.unmatchedCoeff = config.unmatchedCoeff();
+        this.compatibilityThreshold = compatibilityThreshold;
+        this.index = config.speciesIndex() ?
+                new SpeciesIndex(config.speciesIndexBands(), config.speciesIndexRows()) : null;
+
+        this.leaderDistances = leaderDistances;
+        this.fingerprintsByLeaderId = fingerprintsByLeaderId;
+        this.positionsBySpeciesId = leaderDistances != null ? new HashMap<>() : null;
+        this.leaderFingerprints = leaderDistances != null ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Adds the leader of a species
+     * @param species The species
+     */
+    void add(Species species) {
+        add(species, view.apply(species.getLeader()), bandKeys(species.getLeader()));
+    }
+
+    /**
+     * Adds the leader of a species, whose view and band keys are already computed
+     *
+     * @param species The species
+     * @param leaderView The view of the leader
+     * @param keys The band keys of the leader, null if leaders are not indexed
+     */
+    void add(Species species, T leaderView, long[] keys) {
+        if (positionsBySpeciesId != null) {
+            positionsBySpeciesId.put(species.getId(), leaders.size());
+            Genome leader = species.getLeader();
+            leaderFingerprints.add(fingerprintsByLeaderId.computeIfAbsent(leader.getId(),
+                    id -> fingerprint(leader, leaderView)));
+        }
+        if (index != null) index.add(keys);
+        leaders.add(species.getLeader());
+        leaderViews.add(leaderView);
+    }
+
+    /**
+     * Returns the band keys of a Genome in the index of the leaders
+     *
+     * @param genome The Genome
+     * @return The band keys of the Genome, null if leaders are not indexed
+     */
+    long[] bandKeys(Genome genome) {
+        return index != null ? index.bandKeys(genome) : null;
+    }
+
+    /**
+     * Returns the position of the leader a Genome should join: the leader of the species of its parents if compatible
+     * (with lineage enabled), otherwise the first compatible leader, starting with the candidates given by the index,
+     * if any.
+     *
+     * @param genome The Genome
+     * @param genomeView The view of the Genome
+     * @param keys The band keys of the Genome, null if leaders are not indexed
+     * @return The position of the leader, in order of addition, -1 if none is compatible
+     */
+    int find(Genome genome, T genomeView, long[] keys) {
+
+        int parent = -1;
+        int parentDistance = -1;
+        if (positionsBySpeciesId != null) {
+            parent = positionsBySpeciesId.getOrDefault(genome.getParentSpeciesId(), -1);
+            if (parent >= 0) {
+                // An exact copy has a score of 0, unless it has no links (no matching links: incompatible)
+                if (genome.isIdenticalTo(leaders.get(parent)) && !genome.getLinkGenes().isEmpty() &&
+                        compatibilityThreshold > 0)
+                    return parent;
+                if (compatibility.test(genomeView, leaderViews.get(parent)))
+                    return parent;
+                parentDistance = fingerprint(genome, genomeView).unmatchedLinks(leaderFingerprints.get(parent));
+            }
+        }
+
+        // Leaders already tested, skipped by the full scan
+        BitSet tested = new BitSet(leaders.size());
+        if (parent >= 0) tested.set(parent);
+        if (index != null)
+            for (int candidate : index.candidates(keys)) {
+                if (tested.get(candidate)) continue;
+                if (isCompatible(genomeView, candidate, parent, parentDistance))
+                    return candidate;
+                tested.set(candidate);
+            }
+
+        // Full scan
+        for (int i = tested.nextClearBit(0); i < leaders.size(); i = tested.nextClearBit(i + 1))
+            if (isCompatible(genomeView, i, parent, parentDistance))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the fingerprint of a Genome, which is its view if views are fingerprints
+     */
+    private GenomeFingerprint fingerprint(Genome genome, T genomeView) {
+        return genomeView instanceof GenomeFingerprint ? (GenomeFingerprint) genomeView : new GenomeFingerprint(genome);
+    }
+
+    /**
+     * Tests the compatibility of a Genome with a leader, unless the triangle inequality through the parents' leader
+     * proves them incompatible: the compatibility score is at least unmatchedCoeff times the number of unmatched links.
+     */
+    private boolean isCompatible(T genomeView, int leader, int parent, int parentDistance) {
+        if (parentDistance >= 0) {
+            int lowerBound = Math.abs(leaderDistance(parent, leader) - parentDistance);
+            if (unmatchedCoeff * lowerBound >= compatibilityThreshold)
+                return false;
+        }
+        return compatibility.test(genomeView, leaderViews.get(leader));
+    }
+
+    /**
+     * Returns the number of unmatched links between two leaders, memoized by their ids
+     */
+    private int leaderDistance(int a, int b) {
+        int idA = leaders.get(a).getId(), idB = leaders.get(b).getId();
+        long key = ((long) Math.min(idA, idB) << 32) | Math.max(idA, idB);
+        return leaderDistances.computeIfAbsent(key,
+                k -> leaderFingerprints.get(a).unmatchedLinks(leaderFingerprints.get(b)));
+    }
+}
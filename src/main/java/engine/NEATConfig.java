@@ -3,13 +3,20 @@ package engine;
 import activations.ActivationType;
 
 import java.io.FileInputStream;
+import java.util.Map;
 import java.util.Properties;
 
 /**
- * A NEAT configuration parameters file reader
+ * A NEAT configuration parameters file reader. Instances are immutable once loaded, hence a configuration can be
+ * shared by concurrent reproductions and by several populations.
+ *
+ * The mutation probabilities that change between the phases of a phased search (see OperatorProfile) are precomputed
+ * at load time for both phases, each giving a snapshot of the configuration (forPhase): the loaded instance is the
+ * snapshot of the complexifying phase. Populations and species reproduce against the snapshot of the phase they are
+ * in, instead of switching the parameters of a shared instance.
  * @author Acemad
  */
-public class NEATConfig {
+public class NEATConfig implements Cloneable {
 
     // Parameters store
     private final Properties configs = new Properties();
@@ -49,10 +56,16 @@ public class NEATConfig {
     private double          unmatchedCoeff;             // Coefficient of unmatched links in compatibility score
     private double          weightDiffCoeff;            // Coefficient of weight difference in compatibility score
     private double          activationDiffCoeff;        // Coefficient of activation difference in compatibility score
-    private double          compatibilityThreshold;     // Score threshold over which two genomes are incompatible
+    private double          compatibilityThreshold;     // Initial score threshold over which genomes are incompatible
     private boolean         aimForSpeciesNumber;        // Aim for a fixed number of species (dynamic threshold)
     private int             speciesNumberTarget;        // Number of species to aim for if the above is true
     private double          compatibilityThresholdIncrement; // The number by which the threshold is increased/decreased
+    private boolean         bitsetSpeciation;           // Compare genomes through link bitsets (GenomeFingerprint)
+    private int             speciationThreads;          // Threads matching genomes to existing species (0: all cores)
+    private boolean         speciesIndex;               // Look up candidate species in a MinHash/LSH index first
+    private int             speciesIndexBands;          // Number of bands of the index's MinHash signatures
+    private int             speciesIndexRows;           // Number of hash values per band
+    private boolean         lineageSpeciation;          // Test offspring against their parents' species leader first
 
     /* Mating parameters *********************************************************************************************/
 
@@ -101,20 +114,85 @@ public class NEATConfig {
     private boolean         fixDanglingNodesStrict;      // Execute multiple passes to remove all dangling nodes
     private double          danglingRemoveProbability;   // Prob. of removing a dangling node, reconnect otherwise
 
+    /* Steady-state evolution parameters *****************************************************************************/
+
+    private double          steadyStateEligibleProportion; // Proportion of evaluated genomes before replacement starts
+
+    /* Island model parameters ***************************************************************************************/
+
+    private int             islandCount;               // Number of islands evolved concurrently by IslandEvolution
+    private int             migrationInterval;         // Generations between two migrations (0: no migration)
+    private int             migrationSize;             // Number of genomes sent by each island at each migration
+    private String          migrationTopology;         // ring: to the next island, random: to a random island
+
+    /* Termination parameters ****************************************************************************************/
+
+    private double          targetFitness;             // Stop the run once reached (NaN: no target)
+    private double          timeBudgetSeconds;         // Wall-clock budget of a run (0: unlimited)
+
     /* System ********************************************************************************************************/
 
     private int             evaluationThreads;
+    private int             evaluationBatchSize;       // Number of genomes passed at once to evaluateBatch (1: no batching)
+    private double          evaluationTimeout;         // Time budget of a genome evaluation in seconds (0: unlimited)
+    private double          timeoutPenaltyFitness;     // Fitness assigned to genomes overrunning their time budget
+    private int             casePartitionSize;         // Cases per task when splitting a genome evaluation (0: no split)
+    private boolean         racingEvaluation;          // Race genomes over the cases of a CaseEvaluationFunction
+    private double          racingInitialCaseProportion; // Proportion of the cases evaluated in the first round
+    private double          racingEliminationFraction; // Fraction of the remaining genomes frozen after each round
+    private double          racingGrowthFactor;        // Growth factor of the number of cases between rounds
+    private int             evaluationProcesses;       // Worker JVMs used by distributed evaluation (0: in-process)
+    private String          workerJvmOptions;          // Additional options of the worker JVMs
+    private long            workerHeartbeatInterval;   // Interval between two heartbeats of a worker, in ms
+    private long            workerHeartbeatTimeout;    // Delay without heartbeat before a worker is restarted, in ms
+    private boolean         sharedMemoryTransport;     // Pass genomes and results to workers through a mapped file
+    private int             sharedMemorySlotSize;      // Size of a slot of the shared memory ring, in bytes
+    private boolean         pipelinedEvaluation;       // Evaluate offspring while the next species reproduce
+    private int             pipelineQueueCapacity;     // Max offspring waiting for evaluation (0: twice the threads)
+    private int             checkpointInterval;        // Generations between two saved checkpoints
+    private int             checkpointRetention;       // Number of most recent checkpoints kept on disk
+    private int             checkpointQueueCapacity;   // Max checkpoints waiting to be written before evolution waits
+    private boolean         checkpointLog;             // Append checkpoints to a log of deltas, instead of full files
+    private int             checkpointBaseInterval;    // Log records between two full snapshots (log compaction)
+    private boolean         checkpointCompression;     // Deflate checkpoint and statistics files
+    private boolean         checkpointFloatWeights;    // Save connection weights as floats in checkpoints (lossy)
+    private boolean         streamingStats;            // Keep only recent statistics in memory, stream summaries to disk
+    private int             statsRetention;            // Generations of statistics kept in memory in streaming mode
+    private String          statsOutput;               // Per-generation stats files: csv, columnar, both or none
+    private int             experimentThreads;         // Runs of an ExperimentRunner executed concurrently (0: all cores)
+
+    /* Snapshots of the phases of a phased search ********************/
+
+    private NEATConfig complexifying;               // This instance, unless this is the simplifying snapshot
+    private NEATConfig simplifying;
 
-    /* Backup variables for phase switching parameters ***************/
-
-    private double backupMutateAddLinkProbability;
-    private double backupMutateAddNodeProbability;
-    private double backupMutateOnlyProbability;
-    private double backupMutateDeleteLinkProbability;
-    private double backupMutateWeightProbability;
-    private double backupMutateActivationProbability;
-    private double backupMutateReOrientLinkProbability;
-    private double backupMutateDeleteNodeProbability;
+    /**
+     * The mutation probabilities that change between the phases of a phased search
+     */
+    private static class OperatorProfile {
+        private final double mutateOnlyProbability;
+        private final double mutateAddNodeProbability;
+        private final double mutateAddLinkProbability;
+        private final double mutateDeleteLinkProbability;
+        private final double mutateDeleteNodeProbability;
+        private final double mutateReOrientLinkProbability;
+        private final double mutateWeightProbability;
+        private final double mutateActivationProbability;
+
+        private OperatorProfile(double mutateOnlyProbability, double mutateAddNodeProbability,
+                                double mutateAddLinkProbability, double mutateDeleteLinkProbability,
+                                double mutateDeleteNodeProbability, double mutateReOrientLinkProbability,
+                                double mutateWeightProbability, double mutateActivationProbability) {
+            this.mutateOnlyProbability = mutateOnlyProbability;
+            this.mutateAddNodeProbability = mutateAddNodeProbability;
+            this.mutateAddLinkProbability = mutateAddLinkProbability;
+            this.mutateDeleteLinkProbability = mutateDeleteLinkProbability;
+            this.mutateDeleteNodeProbability = mutateDeleteNodeProbability;
+            this.mutateReOrientLinkProbability = mutateReOrientLinkProbability;
+            this.mutateWeightProbability = mutateWeightProbability;
+            this.mutateActivationProbability = mutateActivationProbability;
+        }
+    }
 
     /**
      * Constructor: creates a NEATConfig instance using the given file path. Loads the file and initializes the instance
@@ -123,9 +201,21 @@ public class NEATConfig {
      * @param configFile Path towards a Parameters file
      */
     public NEATConfig(String configFile) {
+        this(configFile, Map.of());
+    }
+
+    /**
+     * Constructor: creates a NEATConfig instance using the given file path, some parameters of which are replaced by
+     * the given values, e.g. those of a point of a parameter grid (see ExperimentRunner)
+     *
+     * @param configFile Path towards a Parameters file
+     * @param overrides Values replacing those of the file, by parameter name
+     */
+    public NEATConfig(String configFile, Map<String, String> overrides) {
 
         // Load the configurations file
         loadConfigurations(configFile);
+        configs.putAll(overrides);
 
         // Instance variables initialization
         /* Initial population parameters: ****************************************************************************/
@@ -167,6 +257,12 @@ public class NEATConfig {
         aimForSpeciesNumber                    = Boolean.parseBoolean(configs.getProperty("aimForSpeciesNumber"));
         speciesNumberTarget                    = Integer.parseInt(configs.getProperty("speciesNumberTarget"));
         compatibilityThresholdIncrement        = Double.parseDouble(configs.getProperty("compatibilityThresholdIncrement"));
+        bitsetSpeciation                       = Boolean.parseBoolean(configs.getProperty("bitsetSpeciation", "false"));
+        speciationThreads                      = Integer.parseInt(configs.getProperty("speciationThreads", "1"));
+        speciesIndex                           = Boolean.parseBoolean(configs.getProperty("speciesIndex", "false"));
+        speciesIndexBands                      = Integer.parseInt(configs.getProperty("speciesIndexBands", "16"));
+        speciesIndexRows                       = Integer.parseInt(configs.getProperty("speciesIndexRows", "4"));
+        lineageSpeciation                      = Boolean.parseBoolean(configs.getProperty("lineageSpeciation", "false"));
 
         /* Mating parameters *****************************************************************************************/
 
@@ -215,21 +311,82 @@ public class NEATConfig {
         fixDanglingNodesStrict                 = Boolean.parseBoolean(configs.getProperty("fixDanglingNodesStrict"));
         danglingRemoveProbability              = Double.parseDouble(configs.getProperty("danglingRemoveProbability"));
 
+        /* Steady-state evolution parameters *************************************************************************/
+
+        steadyStateEligibleProportion          = Double.parseDouble(configs.getProperty("steadyStateEligibleProportion", "0.5"));
+
+        /* Island model parameters ***********************************************************************************/
+
+        islandCount                            = Integer.parseInt(configs.getProperty("islandCount", "4"));
+        migrationInterval                      = Integer.parseInt(configs.getProperty("migrationInterval", "10"));
+        migrationSize                          = Integer.parseInt(configs.getProperty("migrationSize", "2"));
+        migrationTopology                      = configs.getProperty("migrationTopology", "ring");
+
+        /* Termination parameters ************************************************************************************/
+
+        targetFitness                          = Double.parseDouble(configs.getProperty("targetFitness", "NaN"));
+        timeBudgetSeconds                      = Double.parseDouble(configs.getProperty("timeBudgetSeconds", "0"));
+
         /* System ****************************************************************************************************/
 
         evaluationThreads                      = Integer.parseInt(configs.getProperty("evaluationThreads"));
+        evaluationBatchSize                    = Integer.parseInt(configs.getProperty("evaluationBatchSize", "1"));
+        evaluationTimeout                      = Double.parseDouble(configs.getProperty("evaluationTimeout", "0"));
+        timeoutPenaltyFitness                  = Double.parseDouble(configs.getProperty("timeoutPenaltyFitness", "0"));
+        casePartitionSize                      = Integer.parseInt(configs.getProperty("casePartitionSize", "0"));
+        racingEvaluation                       = Boolean.parseBoolean(configs.getProperty("racingEvaluation", "false"));
+        racingInitialCaseProportion            = Double.parseDouble(configs.getProperty("racingInitialCaseProportion", "0.125"));
+        racingEliminationFraction              = Double.parseDouble(configs.getProperty("racingEliminationFraction", "0.5"));
+        racingGrowthFactor                     = Double.parseDouble(configs.getProperty("racingGrowthFactor", "2"));
+        evaluationProcesses                    = Integer.parseInt(configs.getProperty("evaluationProcesses", "0"));
+        workerJvmOptions                       = configs.getProperty("workerJvmOptions", "");
+        workerHeartbeatInterval                = Long.parseLong(configs.getProperty("workerHeartbeatInterval", "1000"));
+        workerHeartbeatTimeout                 = Long.parseLong(configs.getProperty("workerHeartbeatTimeout", "10000"));
+        sharedMemoryTransport                  = Boolean.parseBoolean(configs.getProperty("sharedMemoryTransport", "true"));
+        sharedMemorySlotSize                   = Integer.parseInt(configs.getProperty("sharedMemorySlotSize", "65536"));
+        pipelinedEvaluation                    = Boolean.parseBoolean(configs.getProperty("pipelinedEvaluation", "false"));
+        pipelineQueueCapacity                  = Integer.parseInt(configs.getProperty("pipelineQueueCapacity", "0"));
+        checkpointInterval                     = Integer.parseInt(configs.getProperty("checkpointInterval", "1"));
+        checkpointRetention                    = Integer.parseInt(configs.getProperty("checkpointRetention", "3"));
+        checkpointQueueCapacity                = Integer.parseInt(configs.getProperty("checkpointQueueCapacity", "2"));
+        checkpointLog                          = Boolean.parseBoolean(configs.getProperty("checkpointLog", "false"));
+        checkpointBaseInterval                 = Integer.parseInt(configs.getProperty("checkpointBaseInterval", "10"));
+        checkpointCompression                  = Boolean.parseBoolean(configs.getProperty("checkpointCompression", "true"));
+        checkpointFloatWeights                 = Boolean.parseBoolean(configs.getProperty("checkpointFloatWeights", "false"));
+        streamingStats                         = Boolean.parseBoolean(configs.getProperty("streamingStats", "false"));
+        statsRetention                         = Integer.parseInt(configs.getProperty("statsRetention", "100"));
+        statsOutput                            = configs.getProperty("statsOutput", "csv");
+        experimentThreads                      = Integer.parseInt(configs.getProperty("experimentThreads", "0"));
+
+        // Phased search: the loaded parameters are those of the complexifying phase. The simplifying phase only
+        // mutates, without adding structure
+        complexifying = this;
+        simplifying = withProfile(new OperatorProfile(1, 0, 0, mutateDeleteLinkProbabilitySimplify,
+                mutateDeleteNodeProbabilitySimplify, mutateReOrientLinkProbabilitySimplify,
+                mutateWeightProbabilitySimplify, mutateActivationProbabilitySimplify));
+        simplifying.complexifying = this;
+        simplifying.simplifying = simplifying;
+    }
 
-        // Backup for phased search: Keep a copy of the parameters that change between phases in order to restore them
-        // later
-        backupMutateAddLinkProbability = mutateAddLinkProbability;
-        backupMutateAddNodeProbability = mutateAddNodeProbability;
-        backupMutateOnlyProbability = mutateOnlyProbability;
-        backupMutateDeleteLinkProbability = mutateDeleteLinkProbability;
-        backupMutateWeightProbability = mutateWeightProbability;
-        backupMutateActivationProbability = mutateActivationProbability;
-        backupMutateReOrientLinkProbability = mutateReOrientLinkProbability;
-        backupMutateDeleteNodeProbability = mutateDeleteNodeProbability;
-
+    /**
+     * Returns a copy of this configuration, with the mutation probabilities of the given profile
+     */
+    private NEATConfig withProfile(OperatorProfile profile) {
+        NEATConfig snapshot;
+        try {
+            snapshot = (NEATConfig) clone();
+        } catch (CloneNotSupportedException exception) {
+            throw new AssertionError(exception);
+        }
+        snapshot.mutateOnlyProbability         = profile.mutateOnlyProbability;
+        snapshot.mutateAddNodeProbability      = profile.mutateAddNodeProbability;
+        snapshot.mutateAddLinkProbability      = profile.mutateAddLinkProbability;
+        snapshot.mutateDeleteLinkProbability   = profile.mutateDeleteLinkProbability;
+        snapshot.mutateDeleteNodeProbability   = profile.mutateDeleteNodeProbability;
+        snapshot.mutateReOrientLinkProbability = profile.mutateReOrientLinkProbability;
+        snapshot.mutateWeightProbability       = profile.mutateWeightProbability;
+        snapshot.mutateActivationProbability   = profile.mutateActivationProbability;
+        return snapshot;
     }
 
     /**
@@ -249,49 +406,26 @@ public class NEATConfig {
     }
 
     /**
-     * Switch a subset of parameters to the simplify variants to trigger entry to the simplification phase in a phased
-     * search.
-     */
-    public void switchToSimplifying() {
-        mutateAddLinkProbability      = 0;
-        mutateAddNodeProbability      = 0;
-        mutateOnlyProbability         = 1;
-        mutateDeleteLinkProbability   = mutateDeleteLinkProbabilitySimplify;
-        mutateWeightProbability       = mutateWeightProbabilitySimplify;
-        mutateActivationProbability   = mutateActivationProbabilitySimplify;
-        mutateReOrientLinkProbability = mutateReOrientLinkProbabilitySimplify;
-        mutateDeleteNodeProbability   = mutateDeleteNodeProbabilitySimplify;
-    }
-
-    /**
-     * Switch the same subset of parameters to their original values to trigger a return to the complexification phase
-     * in a phased search.
-     */
-    public void switchToComplexifying() {
-        mutateAddLinkProbability      = backupMutateAddLinkProbability;
-        mutateAddNodeProbability      = backupMutateAddNodeProbability;
-        mutateOnlyProbability         = backupMutateOnlyProbability;
-        mutateDeleteLinkProbability   = backupMutateDeleteLinkProbability;
-        mutateWeightProbability       = backupMutateWeightProbability;
-        mutateActivationProbability   = backupMutateActivationProbability;
-        mutateReOrientLinkProbability = backupMutateReOrientLinkProbability;
-        mutateDeleteNodeProbability   = backupMutateDeleteNodeProbability;
-    }
-
-    /**
-     * Increments the compatibility threshold by the given value. This is used for dynamic threshold adaptation.
-     * @param value The value used to increment compatibility threshold
+     * Returns the snapshot of the configuration for the given phase of a phased search, whose mutation probabilities
+     * are those of the phase. Shared, never modified
+     *
+     * @param simplifying Whether the simplifying phase is requested, the complexifying phase otherwise
+     * @return The configuration of the phase
      */
-    public void incrementCompatibilityThresholdBy(double value) {
-        compatibilityThreshold += value;
+    public NEATConfig forPhase(boolean simplifying) {
+        return simplifying ? this.simplifying : complexifying;
     }
 
     /**
-     * Set the compatibility threshold to the given value. This is used for dynamic threshold adaptation
-     * @param compatibilityThreshold The new threshold
+     * Returns the share of the evaluation threads (all cores if evaluationThreads is 0) left to each of the given
+     * number of populations evolving concurrently, e.g. the islands of an island run or the runs of an experiment
+     *
+     * @param concurrentPopulations The number of populations evaluated at the same time
+     * @return The number of evaluation threads of each population, at least 1
      */
-    public void setCompatibilityThreshold(double compatibilityThreshold) {
-        this.compatibilityThreshold = compatibilityThreshold;
+    public int evaluationThreadsShare(int concurrentPopulations) {
+        int threads = evaluationThreads == 0 ? Runtime.getRuntime().availableProcessors() : evaluationThreads;
+        return Math.max(1, threads / Math.max(1, concurrentPopulations));
     }
 
     @Override
@@ -325,6 +459,12 @@ public class NEATConfig {
                 ", aimForSpeciesNumber=" + aimForSpeciesNumber +
                 ", speciesNumberTarget=" + speciesNumberTarget +
                 ", compatibilityThresholdIncrement=" + compatibilityThresholdIncrement +
+                ", bitsetSpeciation=" + bitsetSpeciation +
+                ", speciationThreads=" + speciationThreads +
+                ", speciesIndex=" + speciesIndex +
+                ", speciesIndexBands=" + speciesIndexBands +
+                ", speciesIndexRows=" + speciesIndexRows +
+                ", lineageSpeciation=" + lineageSpeciation +
                 ", mateOnlyProbability=" + mateOnlyProbability +
                 ", mateAveragingProbability=" + mateAveragingProbability +
                 ", mateKeepGeneDisabledProbability=" + mateKeepGeneDisabledProbability +
@@ -360,7 +500,41 @@ public class NEATConfig {
                 ", fixDanglingNodes=" + fixDanglingNodes +
                 ", fixDanglingNodesStrict=" + fixDanglingNodesStrict +
                 ", danglingRemoveProbability=" + danglingRemoveProbability +
+                ", steadyStateEligibleProportion=" + steadyStateEligibleProportion +
+                ", islandCount=" + islandCount +
+                ", migrationInterval=" + migrationInterval +
+                ", migrationSize=" + migrationSize +
+                ", migrationTopology='" + migrationTopology + '\'' +
+                ", targetFitness=" + targetFitness +
+                ", timeBudgetSeconds=" + timeBudgetSeconds +
                 ", evaluationThreads=" + evaluationThreads +
+                ", evaluationBatchSize=" + evaluationBatchSize +
+                ", evaluationTimeout=" + evaluationTimeout +
+                ", timeoutPenaltyFitness=" + timeoutPenaltyFitness +
+                ", casePartitionSize=" + casePartitionSize +
+                ", racingEvaluation=" + racingEvaluation +
+                ", racingInitialCaseProportion=" + racingInitialCaseProportion +
+                ", racingEliminationFraction=" + racingEliminationFraction +
+                ", racingGrowthFactor=" + racingGrowthFactor +
+                ", evaluationProcesses=" + evaluationProcesses +
+                ", workerJvmOptions='" + workerJvmOptions + '\'' +
+                ", workerHeartbeatInterval=" + workerHeartbeatInterval +
+                ", workerHeartbeatTimeout=" + workerHeartbeatTimeout +
+                ", sharedMemoryTransport=" + sharedMemoryTransport +
+                ", sharedMemorySlotSize=" + sharedMemorySlotSize +
+                ", pipelinedEvaluation=" + pipelinedEvaluation +
+                ", pipelineQueueCapacity=" + pipelineQueueCapacity +
+                ", checkpointInterval=" + checkpointInterval +
+                ", checkpointRetention=" + checkpointRetention +
+                ", checkpointQueueCapacity=" + checkpointQueueCapacity +
+                ", checkpointLog=" + checkpointLog +
+                ", checkpointBaseInterval=" + checkpointBaseInterval +
+                ", checkpointCompression=" + checkpointCompression +
+                ", checkpointFloatWeights=" + checkpointFloatWeights +
+                ", streamingStats=" + streamingStats +
+                ", statsRetention=" + statsRetention +
+                ", statsOutput='" + statsOutput + '\'' +
+                ", experimentThreads=" + experimentThreads +
                 '}';
     }
 
@@ -594,13 +768,173 @@ public class NEATConfig {
         return mutateWeightProportion;
     }
 
+    public int islandCount() {
+        return islandCount;
+    }
+
+    public int migrationInterval() {
+        return migrationInterval;
+    }
+
+    public int migrationSize() {
+        return migrationSize;
+    }
+
+    public String migrationTopology() {
+        return migrationTopology;
+    }
+
+    public double targetFitness() {
+        return targetFitness;
+    }
+
+    public double timeBudgetSeconds() {
+        return timeBudgetSeconds;
+    }
+
     public int evaluationThreads() {
         return evaluationThreads;
     }
 
+    public int evaluationBatchSize() {
+        return evaluationBatchSize;
+    }
+
+    public double evaluationTimeout() {
+        return evaluationTimeout;
+    }
+
+    public double timeoutPenaltyFitness() {
+        return timeoutPenaltyFitness;
+    }
+
+    public int casePartitionSize() {
+        return casePartitionSize;
+    }
+
+    public boolean racingEvaluation() {
+        return racingEvaluation;
+    }
+
+    public double racingInitialCaseProportion() {
+        return racingInitialCaseProportion;
+    }
+
+    public double racingEliminationFraction() {
+        return racingEliminationFraction;
+    }
+
+    public double racingGrowthFactor() {
+        return racingGrowthFactor;
+    }
+
+    public int evaluationProcesses() {
+        return evaluationProcesses;
+    }
+
+    public String workerJvmOptions() {
+        return workerJvmOptions;
+    }
+
+    public long workerHeartbeatInterval() {
+        return workerHeartbeatInterval;
+    }
+
+    public long workerHeartbeatTimeout() {
+        return workerHeartbeatTimeout;
+    }
+
+    public boolean sharedMemoryTransport() {
+        return sharedMemoryTransport;
+    }
+
+    public int sharedMemorySlotSize() {
+        return sharedMemorySlotSize;
+    }
+
+    public boolean pipelinedEvaluation() {
+        return pipelinedEvaluation;
+    }
+
+    public int pipelineQueueCapacity() {
+        return pipelineQueueCapacity;
+    }
+
+    public int checkpointInterval() {
+        return checkpointInterval;
+    }
+
+    public int checkpointRetention() {
+        return checkpointRetention;
+    }
+
+    public int checkpointQueueCapacity() {
+        return checkpointQueueCapacity;
+    }
+
+    public boolean checkpointLog() {
+        return checkpointLog;
+    }
+
+    public int checkpointBaseInterval() {
+        return checkpointBaseInterval;
+    }
+
+    public boolean checkpointCompression() {
+        return checkpointCompression;
+    }
+
+    public boolean checkpointFloatWeights() {
+        return checkpointFloatWeights;
+    }
+
+    public boolean streamingStats() {
+        return streamingStats;
+    }
+
+    public int statsRetention() {
+        return statsRetention;
+    }
+
+    public String statsOutput() {
+        return statsOutput;
+    }
+
+    public int experimentThreads() {
+        return experimentThreads;
+    }
+
     public double compatibilityThresholdIncrement() {
         return compatibilityThresholdIncrement;
     }
 
+    public boolean bitsetSpeciation() {
+        return bitsetSpeciation;
+    }
+
+    public int speciationThreads() {
+        return speciationThreads;
+    }
+
+    public boolean speciesIndex() {
+        return speciesIndex;
+    }
+
+    public int speciesIndexBands() {
+        return speciesIndexBands;
+    }
+
+    public int speciesIndexRows() {
+        return speciesIndexRows;
+    }
+
+    public boolean lineageSpeciation() {
+        return lineageSpeciation;
+    }
+
+    public double steadyStateEligibleProportion() {
+        return steadyStateEligibleProportion;
+    }
+
 
 }
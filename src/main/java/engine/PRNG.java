@@ -9,7 +9,8 @@ import org.apache.commons.rng.simple.RandomSource;
 
 /**
  * A PRNG wrapper used as a central random number generator. The underlying generator can be changed by
- * modifying the random variable
+ * modifying the random variable. A thread can be bound to its own generator, which replaces the central one for
+ * this thread only.
  * @author Acemad
  */
 public class PRNG {
@@ -18,6 +19,51 @@ public class PRNG {
     // private static final Random random = ThreadLocalRandom.current();
     private static final UniformRandomProvider random = RandomSource.XOR_SHIFT_1024_S_PHI.create();
 
+    // Generators bound to specific threads, used instead of the central generator by these threads. Allows concurrent
+    // evolution processes (e.g. islands) to each draw from their own stream.
+    private static final ThreadLocal<UniformRandomProvider> threadRandom = new ThreadLocal<>();
+
+    /**
+     * Creates a new independent generator of the same kind as the central one
+     * @return A new random generator, randomly seeded
+     */
+    public static UniformRandomProvider newStream() {
+        return RandomSource.XOR_SHIFT_1024_S_PHI.create();
+    }
+
+    /**
+     * Creates a new independent generator of the same kind as the central one, using the given seed
+     * @param seed The seed of the generator
+     * @return A new random generator
+     */
+    public static UniformRandomProvider newStream(long seed) {
+        return RandomSource.XOR_SHIFT_1024_S_PHI.create(seed);
+    }
+
+    /**
+     * Binds a generator to the current thread, all random numbers drawn by this thread come from this generator until
+     * it's unbound
+     * @param generator The generator to bind
+     */
+    public static void bindToCurrentThread(UniformRandomProvider generator) {
+        threadRandom.set(generator);
+    }
+
+    /**
+     * Unbinds the generator of the current thread, which goes back to the central generator
+     */
+    public static void unbindFromCurrentThread() {
+        threadRandom.remove();
+    }
+
+    /**
+     * @return The generator bound to the current thread if any, the central generator otherwise
+     */
+    private static UniformRandomProvider random() {
+        UniformRandomProvider generator = threadRandom.get();
+        return generator != null ? generator : random;
+    }
+
     /**
      * Random weight generator. Generates random doubles in the range [weightRangeMin, weightRangeMax[
      * weightRangeMin must be less than weightRangeMax, otherwise their values will be swapped.
@@ -36,7 +82,7 @@ public class PRNG {
      * @return A random double
      */
     public static double nextDouble() {
-        return random.nextDouble();
+        return random().nextDouble();
     }
 
     /**
@@ -45,7 +91,7 @@ public class PRNG {
      * @return A random double sampled from the normal distribution
      */
     public static double nextGaussian(double sigma) {
-        ContinuousSampler sampler = GaussianSampler.of(ZigguratNormalizedGaussianSampler.of(random), 0, sigma);
+        ContinuousSampler sampler = GaussianSampler.of(ZigguratNormalizedGaussianSampler.of(random()), 0, sigma);
         return sampler.sample();
     }
 
@@ -55,7 +101,15 @@ public class PRNG {
      * @return A random integer
      */
     public static int nextInt(int bound) {
-        return random.nextInt(bound);
+        return random().nextInt(bound);
+    }
+
+    /**
+     * Returns a random long, e.g. the seed of a new stream
+     * @return A random long
+     */
+    public static long nextLong() {
+        return random().nextLong();
     }
 
     /**
@@ -63,7 +117,7 @@ public class PRNG {
      * @return random boolean value
      */
     public static boolean nextBoolean() {
-        return random.nextBoolean();
+        return random().nextBoolean();
     }
 
 }
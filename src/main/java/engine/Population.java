@@ -1,16 +1,26 @@
 package engine;
 
+import encoding.CompactGenomeCodec;
 import encoding.Genome;
+import encoding.GenomeFingerprint;
 import engine.stats.EvolutionStats;
 import engine.stats.ReproductionStats;
 import innovation.InnovationDB;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import util.BinaryInput;
+import util.BinaryOutput;
+import util.Compression;
 import util.ObjectSaver;
+import util.VarInt;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
  * The Population class, represents the main population of Genomes and their associated Species
@@ -21,6 +31,12 @@ public class Population implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    // Binary population file format: "ANEATPOP" magic number, version, and compression modes of the body
+    private static final long FILE_MAGIC = 0x414E454154504F50L;
+    private static final int FILE_VERSION = 1;
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte DEFLATED = 1;
+
     // The population of Genomes
     private List<Genome>  population = new ArrayList<>();
 
@@ -33,6 +49,10 @@ public class Population implements Serializable {
     // Population staleness value (or, how many generations' fitness did not improve)
     private int staleness = 0;
 
+    // The score threshold over which two genomes are incompatible, adapted along the number of species. 0 until set
+    // from the configuration, in populations saved with Java serialization
+    private double compatibilityThreshold;
+
     // Maximum fitness observed
     private Double maxFitnessSoFar = null;
 
@@ -45,6 +65,17 @@ public class Population implements Serializable {
     // Used to store the age of the population. How many evolution steps were performed?
     private int age = 0;
 
+    // Indicates whether the current population was already evaluated during reproduction (pipelined evaluation)
+    private boolean evaluated = false;
+
+    // Members left unevaluated at the end of a run, excluded from fitness statistics. Null if none
+    private transient Set<Genome> unevaluatedGenomes;
+
+    // Number of unmatched links between species leaders, and fingerprints of the leaders, by leader ids, kept across
+    // generations (lineage speciation)
+    private transient Map<Long, Integer> leaderDistances;
+    private transient Map<Integer, GenomeFingerprint> leaderFingerprints;
+
     // Phased Search **************
 
     // The pruning threshold after which search enters the complexifying phase
@@ -53,8 +84,9 @@ public class Population implements Serializable {
     private boolean simplifyingPhase = false;
     // The last population age at which a complexifying to simplifying phase occurred
     private int lastTransitionAge;
-    // Summary statistics for population complexity across the generations
-    private final SummaryStatistics complexityStats = new SummaryStatistics();
+    // Sum and number of the mean complexities of the population across the generations
+    private double complexitySum;
+    private long complexityCount;
 
 
     /**
@@ -63,10 +95,22 @@ public class Population implements Serializable {
      * @param config The NEAT configuration instance containing all parameters
      */
     public Population(NEATConfig config) {
-
         // Initiate the innovation database. Sets the nodes' ids, and ids trackers
-        innovationDB = new InnovationDB(config.numInput(), config.numOutput(), config.includeBias(),
-                config.defaultActivationType(), config.weightRangeMin(), config.weightRangeMax());
+        this(config, new InnovationDB(config.numInput(), config.numOutput(), config.includeBias(),
+                config.defaultActivationType(), config.weightRangeMin(), config.weightRangeMax()));
+    }
+
+    /**
+     * Constructs a population using the configurations from a NEATConfig instance, and the given innovation database,
+     * which can be shared with other populations
+     *
+     * @param config The NEAT configuration instance containing all parameters
+     * @param innovationDB The innovation database to use
+     */
+    public Population(NEATConfig config, InnovationDB innovationDB) {
+
+        this.innovationDB = innovationDB;
+        compatibilityThreshold = config.compatibilityThreshold();
 
         // Generate initial Genomes
         while (population.size() < config.populationSize())
@@ -76,6 +120,13 @@ public class Population implements Serializable {
         bestGenome = population.get(0);
     }
 
+    /**
+     * Creates an empty population, to be filled by readFromFile
+     */
+    private Population(InnovationDB innovationDB) {
+        this.innovationDB = innovationDB;
+    }
+
     /**
      * Perform a single NEAT evolution step, after which a new generation of Genomes replaces the actual population
      *
@@ -83,13 +134,40 @@ public class Population implements Serializable {
      * @param config The NEAT configuration instance containing all parameters
      */
     public void evolve(EvaluationFunction evaluationFunction, NEATConfig config, EvolutionStats evolutionStats) {
+        evolve(evaluationFunction, config, evolutionStats, null);
+    }
+
+    /**
+     * Perform a single NEAT evolution step, after which a new generation of Genomes replaces the actual population.
+     * If the given control signals the end of the run during evaluation, the step ends right after speciation: the
+     * evaluated population is kept, and no new generation is produced.
+     *
+     * @param evaluationFunction The fitness function for evaluating Genomes
+     * @param config The NEAT configuration instance containing all parameters
+     * @param control The termination control of the run, null if none
+     * @return true if a new generation was produced, false if the run must stop
+     */
+    public boolean evolve(EvaluationFunction evaluationFunction, NEATConfig config, EvolutionStats evolutionStats,
+                          EvaluationControl control) {
+
+        // The run ended before this generation could be evaluated, the previous best genome stands
+        if (control != null && control.shouldStop() && !evaluated) return false;
+        Genome previousBest = bestGenome;
 
-        // 1. Using the given evaluation function, evaluate the fitness of individuals in the population
-        evaluatePopulation(evaluationFunction, config.evaluationThreads()); // System.out.println("Eval done!");
+        // 1. Using the given evaluation function, evaluate the fitness of individuals in the population. In pipelined
+        // mode the population was already evaluated while it was being reproduced, only rank it.
+        if (evaluated) rankPopulation();
+        else evaluatePopulation(evaluationFunction, config, control); // System.out.println("Eval done!");
         // 2. Divide Genomes into species, then clean up the species
         speciate(config); // System.out.println("Speciation done!");
         // Update evolution statistics
         evolutionStats.updateEvolutionStats(this);
+        // Stop here if the target fitness is reached or the time budget is exhausted. When the evaluation was cut short,
+        // the best genome of the previous generation might still be the best one found
+        if (control != null && control.shouldStop()) {
+            if (previousBest != null && previousBest.getFitness() > bestGenome.getFitness()) bestGenome = previousBest;
+            return false;
+        }
         // 3. Check for stale species. Heavily penalize the fitness of stale species
         processSpeciesStaleness(config); // System.out.println("Species staleness done!");
         // 4. Compute the adjusted fitness of Genomes
@@ -98,13 +176,16 @@ public class Population implements Serializable {
         computeSpawnAmounts(); // System.out.println("Spawn compute done!");
         // 6. Check for the staleness of the population, keep only the best species if population is stale
         processPopulationStaleness(config); //System.out.println("Population staleness done!");
-        // 7. In case of a phased search determine the phase and select the appropriate parameters
-        if (config.globalPhasedSearch()) globalPhaseSelection(config);
-        else if (config.speciesPhasedSearch()) speciesPhaseSelection(config);
-        // 8. Generate a new generation of offsprings through mating and mutation within the species
-        reproduce(config, evolutionStats); //System.out.println("Reproduce done!");
+        // 7. In case of a phased search determine the phase, and select the configuration snapshot of the phase
+        selectSearchPhase(config);
+        NEATConfig phaseConfig = config.globalPhasedSearch() ? config.forPhase(simplifyingPhase) : config;
+        // 8. Generate a new generation of offsprings through mating and mutation within the species. In pipelined
+        // mode, the offsprings are evaluated while the remaining species reproduce
+        if (config.pipelinedEvaluation()) reproducePipelined(evaluationFunction, phaseConfig, evolutionStats, control);
+        else reproduce(phaseConfig, evolutionStats); //System.out.println("Reproduce done!");
         // increment population age
         age++;
+        return true;
     }
 
     /**
@@ -116,10 +197,38 @@ public class Population implements Serializable {
     public void evaluatePopulation(EvaluationFunction evaluationFunction, int threads) {
         // Evaluate the population
         evaluationFunction.evaluateAll(population, threads);
+        // Sort and designate the best genome
+        rankPopulation();
+    }
+
+    /**
+     * Evaluate all the members of the population using the given evaluation function, with the number of threads and
+     * the per-genome time budget set in the configuration. Outstanding evaluations are skipped once the given control
+     * signals the end of the run
+     *
+     * @param evaluationFunction The evaluation function used for evaluating the fitness of the Genomes
+     * @param config The configuration instance containing all parameter values
+     * @param control The termination control of the run, null if none
+     */
+    public void evaluatePopulation(EvaluationFunction evaluationFunction, NEATConfig config,
+                                   EvaluationControl control) {
+        // Evaluate the population
+        EvaluationScheduler scheduler = new EvaluationScheduler(evaluationFunction, config, control);
+        scheduler.evaluateAll(population);
+        setUnevaluatedGenomes(scheduler.getSkippedGenomes());
+        // Sort and designate the best genome
+        rankPopulation();
+    }
+
+    /**
+     * Sorts the evaluated population in descending order by fitness, and designates the best genome
+     */
+    private void rankPopulation() {
         // Sort the population in descending order by their fitness
         population.sort(Collections.reverseOrder());
         // Designate the best genome
         bestGenome = population.get(0);
+        evaluated = false;
     }
 
     /**
@@ -133,41 +242,24 @@ public class Population implements Serializable {
 
         // Adapt compatibility threshold: Tries to keep the number of species fixed to a given value, at all time.
         // Aims to increase diversity
-        if (config.aimForSpeciesNumber() && age > 1) {
-            if (getSpeciesCount() < config.speciesNumberTarget())
-                config.incrementCompatibilityThresholdBy(-config.compatibilityThresholdIncrement());
-            else if (getSpeciesCount() > config.speciesNumberTarget())
-                config.incrementCompatibilityThresholdBy(config.compatibilityThresholdIncrement());
-
-            if (config.compatibilityThreshold() < config.compatibilityThresholdIncrement())
-                config.setCompatibilityThreshold(config.compatibilityThresholdIncrement());
-        }
+        initCompatibilityThreshold(config);
+        if (age > 1) adaptCompatibilityThreshold(config);
 
         // Clear all members of the species from the previous generations. The leader of the species is kept in his own
         // field
         for (Species species : allSpecies)
             species.getMembers().clear();
 
-        // Put each genome in the species which he's most compatible with its representative
-        for (Genome genome : population) {
-
-            boolean compatibleSpeciesFound = false;
-
-            for (Species species : allSpecies) {
-
-                // A species compatible with this Genome is found, add it
-                if (genome.isCompatibleWith(species.getLeader(), config.unmatchedCoeff(), config.weightDiffCoeff(),
-                        config.activationDiffCoeff(), config.compatibilityThreshold())) {
-                    compatibleSpeciesFound = true;
-                    species.addMember(genome);
-                    break;
-                }
-            }
-
-            // No species compatible is found, create a new species using this Genome as a temporary leader
-            if (!compatibleSpeciesFound)
-                allSpecies.add(new Species(genome, innovationDB));
-        }
+        // Put each genome in the species which he's most compatible with its representative, comparing either the
+        // genomes themselves or their link bitsets
+        if (config.bitsetSpeciation())
+            assignSpecies(GenomeFingerprint::new, (fingerprint, leaderFingerprint) ->
+                    fingerprint.isCompatibleWith(leaderFingerprint, config.unmatchedCoeff(), config.weightDiffCoeff(),
+                            config.activationDiffCoeff(), compatibilityThreshold), config);
+        else
+            assignSpecies(genome -> genome, (genome, leader) ->
+                    genome.isCompatibleWith(leader, config.unmatchedCoeff(), config.weightDiffCoeff(),
+                            config.activationDiffCoeff(), compatibilityThreshold), config);
 
         // Resets the leader of each species to the best performing genome (with the highest fitness)
         for (Species species : allSpecies)
@@ -181,6 +273,181 @@ public class Population implements Serializable {
         allSpecies.removeIf(species -> species.getMembers().isEmpty() && species.getLeader() != bestGenome);
     }
 
+    /**
+     * Assigns each Genome to the first species whose leader it is compatible with, founding a new species with the
+     * Genome as its leader when none is. Genomes are compared through a view (the Genome itself, or its fingerprint),
+     * computed once per Genome and leader.
+     *
+     * Gives exactly the result of a sequential loop over the population, in two phases: first, all Genomes are matched
+     * against the leaders of the existing species, in parallel, since each search is independent of the others. Then,
+     * the Genomes left without a species are matched, in population order, against the species founded by the
+     * previous ones. Existing species come first in the list of species, hence the first compatible species found in
+     * phase one is the one the sequential loop would have picked, and members are added in population order.
+     *
+     * This holds for a given view. With bitsetSpeciation enabled, fingerprints sum weight differences in link id order
+     * while Genome.isCompatibleWith sums them in the iteration order of a hash set, so a score within a rounding error
+     * of the compatibility threshold may be decided differently than with Genomes as views (see GenomeFingerprint).
+     *
+     * With speciesIndex enabled, leaders are looked up in a SpeciesIndex (MinHash/LSH over link ids), and only the
+     * candidate leaders it returns are tested, in species order, falling back to all leaders when none of them is
+     * compatible. With lineageSpeciation enabled, Genomes join the species of their parents whenever compatible (see
+     * LeaderSearch). In both cases, a Genome may join a compatible species other than the first one.
+     *
+     * @param view Computes the view of a Genome used for compatibility tests
+     * @param compatibility Tests the compatibility between the view of a Genome and the view of a species leader
+     * @param config The configuration instance containing all parameter values
+     * @param <T> The type of the view
+     */
+    private <T> void assignSpecies(Function<Genome, T> view, BiPredicate<T, T> compatibility, NEATConfig config) {
+
+        // Leaders of the existing species, and of the species founded in this pass
+        if (config.lineageSpeciation()) retainLeaderMemos();
+        LeaderSearch<T> existingLeaders = new LeaderSearch<>(view, compatibility, config, compatibilityThreshold,
+                config.lineageSpeciation() ? leaderDistances : null,
+                config.lineageSpeciation() ? leaderFingerprints : null);
+        LeaderSearch<T> founders = new LeaderSearch<>(view, compatibility, config, compatibilityThreshold, null,
+                null);
+        for (Species species : allSpecies)
+            existingLeaders.add(species);
+        int existingSpecies = allSpecies.size();
+
+        // Phase one: index of the first compatible existing species of each Genome, -1 if none
+        List<T> views = new ArrayList<>(Collections.nCopies(population.size(), null));
+        long[][] keys = new long[population.size()][];
+        int[] assignedSpecies = new int[population.size()];
+        parallelFor(population.size(), config.speciationThreads(), i -> {
+            Genome genome = population.get(i);
+            views.set(i, view.apply(genome));
+            keys[i] = existingLeaders.bandKeys(genome);
+            assignedSpecies[i] = existingLeaders.find(genome, views.get(i), keys[i]);
+        });
+
+        // Phase two: in population order, against the species founded in this pass
+        for (int i = 0; i < population.size(); i++) {
+            Genome genome = population.get(i);
+            if (assignedSpecies[i] >= 0) {
+                allSpecies.get(assignedSpecies[i]).addMember(genome);
+                continue;
+            }
+
+            int founder = founders.find(genome, views.get(i), keys[i]);
+            if (founder >= 0)
+                allSpecies.get(existingSpecies + founder).addMember(genome);
+            else {
+                // No species compatible is found, create a new species using this Genome as a temporary leader
+                Species species = new Species(genome, innovationDB);
+                allSpecies.add(species);
+                founders.add(species, views.get(i), keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Drops the entries of genomes that are no longer leaders from the memos of unmatched links between species
+     * leaders, keyed by the ids of both leaders, and of leader fingerprints, keyed by leader id
+     */
+    private void retainLeaderMemos() {
+        if (leaderDistances == null) leaderDistances = new ConcurrentHashMap<>();
+        if (leaderFingerprints == null) leaderFingerprints = new HashMap<>();
+
+        Set<Integer> leaderIds = new HashSet<>();
+        for (Species species : allSpecies) leaderIds.add(species.getLeader().getId());
+        leaderDistances.keySet().removeIf(key ->
+                !leaderIds.contains((int) (key >>> 32)) || !leaderIds.contains((int) (long) key));
+        leaderFingerprints.keySet().retainAll(leaderIds);
+    }
+
+    /**
+     * Runs task(i) for every i in [0, count), splitting the range in contiguous chunks over a fixed thread pool
+     *
+     * @param count The number of indexes
+     * @param threads The number of threads to use (0: all available cores)
+     * @param task The task to run on each index
+     */
+    private static void parallelFor(int count, int threads, IntConsumer task) {
+
+        int threadsToUse = Math.min(count, threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+        if (threadsToUse <= 1) {
+            for (int i = 0; i < count; i++) task.accept(i);
+            return;
+        }
+
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int chunk = 0; chunk < threadsToUse; chunk++) {
+            int from = (int) ((long) count * chunk / threadsToUse);
+            int to = (int) ((long) count * (chunk + 1) / threadsToUse);
+            chunks.add(() -> {
+                for (int i = from; i < to; i++) task.accept(i);
+                return null;
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadsToUse);
+        try {
+            for (Future<Void> chunk : executorService.invokeAll(chunks))
+                chunk.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Adapts the compatibility threshold in order to keep the number of species close to the target number of species,
+     * if enabled. The threshold is lowered when there are fewer species than the target and raised otherwise.
+     *
+     * @param config The configuration instance containing all parameter values
+     */
+    public void adaptCompatibilityThreshold(NEATConfig config) {
+
+        if (config.aimForSpeciesNumber()) {
+            if (getSpeciesCount() < config.speciesNumberTarget())
+                compatibilityThreshold -= config.compatibilityThresholdIncrement();
+            else if (getSpeciesCount() > config.speciesNumberTarget())
+                compatibilityThreshold += config.compatibilityThresholdIncrement();
+
+            if (compatibilityThreshold < config.compatibilityThresholdIncrement())
+                compatibilityThreshold = config.compatibilityThresholdIncrement();
+        }
+    }
+
+    /**
+     * Sets the compatibility threshold to its initial value from the configuration, unless already set. Populations
+     * saved with Java serialization lack the threshold, which was kept in the configuration
+     */
+    private void initCompatibilityThreshold(NEATConfig config) {
+        if (compatibilityThreshold <= 0) compatibilityThreshold = config.compatibilityThreshold();
+    }
+
+    /**
+     * Incremental speciation of a single Genome: puts the Genome in the first species whose leader it is compatible
+     * with, or creates a new species with the Genome as its leader. Used when Genomes enter the population one at a
+     * time, as in steady-state evolution.
+     *
+     * @param genome The Genome to speciate
+     * @param config The configuration instance containing all parameter values
+     * @return The species the Genome was assigned to
+     */
+    public Species speciateGenome(Genome genome, NEATConfig config) {
+
+        initCompatibilityThreshold(config);
+        for (Species species : allSpecies) {
+            if (genome.isCompatibleWith(species.getLeader(), config.unmatchedCoeff(), config.weightDiffCoeff(),
+                    config.activationDiffCoeff(), compatibilityThreshold)) {
+                species.addMember(genome);
+                return species;
+            }
+        }
+
+        // No compatible species, found a new one
+        Species species = new Species(genome, innovationDB);
+        allSpecies.add(species);
+        return species;
+    }
+
     /**
      * Verify the staleness status of the species. A species is considered stale if it fails to improve its highest
      * fitness for a predefined number of generations (maxSpeciesStaleness)
@@ -293,12 +560,7 @@ public class Population implements Serializable {
     public void processPopulationStaleness(NEATConfig config) {
 
         // 1. Check whether the maxFitness has improved. If not, increment staleness.
-        if (maxFitnessSoFar == null || bestGenome.getFitness() > maxFitnessSoFar) {
-            // Population improved
-            maxFitnessSoFar = bestGenome.getFitness();
-            staleness = 0;
-        } else // stale population
-            staleness++;
+        updateStaleness();
 
         // 2. Stale population: allow the two top species only to reproduce, remove the rest.
         if (staleness > config.maxPopulationStaleness()) {
@@ -320,6 +582,30 @@ public class Population implements Serializable {
         }
     }
 
+    /**
+     * Increments the staleness counter of the population, or resets it if the best genome improves over the maximum
+     * fitness observed so far
+     */
+    void updateStaleness() {
+        if (maxFitnessSoFar == null || bestGenome.getFitness() > maxFitnessSoFar) {
+            // Population improved
+            maxFitnessSoFar = bestGenome.getFitness();
+            staleness = 0;
+        } else // stale population
+            staleness++;
+    }
+
+    /**
+     * In case of a phased search, determines the phase of the population (global phased search) or of each species
+     * (species phased search) for the next generation
+     *
+     * @param config The configuration instance containing all parameters
+     */
+    void selectSearchPhase(NEATConfig config) {
+        if (config.globalPhasedSearch()) globalPhaseSelection(config);
+        else if (config.speciesPhasedSearch()) speciesPhaseSelection(config);
+    }
+
     /**
      * This method is responsible for switching between simplifying and complexifying phases, depending on the
      * satisfaction of the conditions of entering to either phase. This will be called only if phased search is enabled.
@@ -344,14 +630,14 @@ public class Population implements Serializable {
         // In the first generation determine the initial pruning threshold and add mean complexity to summary stats obj
         if (age == 0) {
             pruneThreshold = meanComplexity + config.meanComplexityThreshold();
-            complexityStats.addValue(meanComplexity);
+            addComplexity(meanComplexity);
         }
 
         // Compute the average of previous complexity values
-        double previousMeanComplexityAvg = complexityStats.getMean();
+        double previousMeanComplexityAvg = complexityAverage();
 
         // Add current mean complexity to the summary statistics object after the first generation
-        if (age >= 1) complexityStats.addValue(meanComplexity);
+        if (age >= 1) addComplexity(meanComplexity);
 
         // In case we're at the complexifying phase
         if (!simplifyingPhase) {
@@ -359,10 +645,9 @@ public class Population implements Serializable {
             if ((meanComplexity > pruneThreshold) && (staleness > config.minStaleComplexifyGenerations())) {
                 // Enter simplifying phase
                 simplifyingPhase = true;
-                // Record the age in which the transition happens
+                // Record the age in which the transition happens. Reproduction uses the simplifying parameters from
+                // now on
                 lastTransitionAge = age;
-                // Switch to simplifying parameters
-                config.switchToSimplifying();
                 // System.out.println(age + " Switching --> Simplifying " + meanComplexity + " > " + pruneThreshold);
             }
         }
@@ -370,12 +655,10 @@ public class Population implements Serializable {
         else {
             // Check if it's possible to transition to the complexifying phase
             if (((age - lastTransitionAge) >= config.minSimplifyGenerations()) && (meanComplexity < pruneThreshold)
-                    && (complexityStats.getMean() >= previousMeanComplexityAvg)) {
+                    && (complexityAverage() >= previousMeanComplexityAvg)) {
                 // System.out.println(age + " Switching --> Complexifying " + meanComplexity + " < " + pruneThreshold);
-                // Switch to complexifying phase
+                // Switch to complexifying phase, and parameters
                 simplifyingPhase = false;
-                // Switch to complexifying parameters
-                config.switchToComplexifying();
                 // If we don't use an absolute threshold (instead, a relative threshold), update the prune threshold
                 // using the current mean complexity
                 if (config.relativeThreshold())
@@ -430,6 +713,144 @@ public class Population implements Serializable {
         population = newGeneration;
     }
 
+    /**
+     * Adds a single Genome to the population, without speciating it.
+     * @param genome The Genome to add
+     */
+    public void addGenome(Genome genome) {
+        population.add(genome);
+    }
+
+    /**
+     * Removes a single Genome from the population. Genomes are matched by reference. The Genome is not removed from
+     * its species.
+     * @param genome The Genome to remove
+     */
+    public void removeGenome(Genome genome) {
+        population.removeIf(member -> member == genome);
+    }
+
+    /**
+     * Designates the given Genome as the best genome of the population if its fitness is higher than the fitness of
+     * the actual best genome.
+     * @param genome A newly evaluated Genome
+     */
+    public void updateBestGenome(Genome genome) {
+        if (genome.getFitness() > bestGenome.getFitness())
+            bestGenome = genome;
+    }
+
+    /**
+     * Sets the members whose fitness is not theirs, since they were not evaluated (e.g. skipped at the end of the run,
+     * or still being evaluated in steady-state evolution). They are excluded from fitness statistics.
+     * @param genomes The unevaluated members, compared by reference
+     */
+    public void setUnevaluatedGenomes(Set<Genome> genomes) {
+        unevaluatedGenomes = genomes.isEmpty() ? null : genomes;
+    }
+
+    /**
+     * Checks whether a member of the population was evaluated, see setUnevaluatedGenomes
+     * @param genome A member of the population
+     * @return false if the member was left unevaluated
+     */
+    public boolean wasEvaluated(Genome genome) {
+        return unevaluatedGenomes == null || !unevaluatedGenomes.contains(genome);
+    }
+
+    /**
+     * Increments the age of the population. Used by evolution schemes that do not go through evolve().
+     */
+    public void incrementAge() {
+        age++;
+    }
+
+    /**
+     * Returns the leaders of the best species, the species being sorted by the fitness of their leaders. Taking one
+     * Genome per species yields the best Genomes of the last evaluated generation, without duplicating a niche.
+     *
+     * @param count The number of Genomes to return, at most
+     * @return The leaders of the count best species, best first
+     */
+    public List<Genome> getTopSpeciesLeaders(int count) {
+        List<Genome> leaders = new ArrayList<>();
+        for (Species species : allSpecies) {
+            if (leaders.size() == count) break;
+            leaders.add(species.getLeader());
+        }
+        return leaders;
+    }
+
+    /**
+     * Adds the given immigrant Genomes to the current generation, each one replacing a distinct member. The elite
+     * copies of the species leaders and the copy of the best genome are never replaced. If the generation was already
+     * evaluated (pipelined evaluation), the lowest-ranked members are replaced, otherwise randomly chosen ones. The
+     * immigrants are copied using this population's innovation database. Immigrants left without a member to replace
+     * are dropped.
+     *
+     * @param immigrants The Genomes to add
+     */
+    public void receiveImmigrants(List<Genome> immigrants) {
+
+        Map<Integer, Genome> leaders = new HashMap<>();
+        for (Species species : allSpecies) leaders.put(species.getId(), species.getLeader());
+
+        // Indexes of the members that may be replaced: elites are the exact copies of their parent species' leader
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < population.size(); i++) {
+            Genome member = population.get(i), leader = leaders.get(member.getParentSpeciesId());
+            if ((leader == null || !member.isIdenticalTo(leader)) &&
+                    (bestGenome == null || !member.isIdenticalTo(bestGenome)))
+                candidates.add(i);
+        }
+
+        int count = Math.min(immigrants.size(), candidates.size());
+        if (evaluated)
+            candidates.sort(Comparator.comparingDouble(index -> population.get(index).getFitness()));
+        else // Partial shuffle, the first count candidates are distinct random members
+            for (int i = 0; i < count; i++)
+                Collections.swap(candidates, i, i + PRNG.nextInt(candidates.size() - i));
+
+        for (int i = 0; i < count; i++)
+            population.set(candidates.get(i), new Genome(immigrants.get(i), innovationDB));
+    }
+
+    /**
+     * Creates a new generation of Genomes by reproducing within each species, and evaluates the offspring of each
+     * species while the next species reproduce. Offspring are pushed onto the bounded queue of an evaluation pipeline
+     * as soon as a species spawns them. The new generation replaces the old one once all offspring are evaluated, and
+     * is ranked at the beginning of the next evolution step.
+     *
+     * @param evaluationFunction The evaluation function used for evaluating the fitness of the Genomes
+     * @param config The configuration instance containing all parameter values
+     * @param evolutionStats The evolution statistics to update with the reproduction stats
+     * @param control The termination control of the run, null if none
+     */
+    public void reproducePipelined(EvaluationFunction evaluationFunction, NEATConfig config,
+                                   EvolutionStats evolutionStats, EvaluationControl control) {
+
+        List<Genome> newGeneration = new ArrayList<>();
+        ReproductionStats reproductionStats = new ReproductionStats();
+        EvaluationScheduler scheduler = new EvaluationScheduler(evaluationFunction, config, control);
+        EvaluationPipeline pipeline = new EvaluationPipeline(scheduler, config.pipelineQueueCapacity(),
+                config.evaluationBatchSize());
+
+        for (Species species : allSpecies) {
+            species.selectParents(config.parentsSurvivalThreshold());
+            List<Genome> offsprings = species.spawnOffsprings(innovationDB, config, reproductionStats);
+            // Evaluation of this species' offspring starts right away
+            pipeline.submitAll(offsprings);
+            newGeneration.addAll(offsprings);
+        }
+
+        // Wait for the last offsprings to be evaluated
+        evaluated = pipeline.awaitCompletion();
+        setUnevaluatedGenomes(scheduler.getSkippedGenomes());
+
+        evolutionStats.updateReproductionStats(reproductionStats);
+        population = newGeneration;
+    }
+
     /**
      * Compute the mean complexity of the population
      * @return Mean complexity of the population
@@ -441,23 +862,276 @@ public class Population implements Serializable {
         return sum / population.size();
     }
 
+    /**
+     * Adds the mean complexity of a generation to the complexity history of the population
+     * @param meanComplexity The mean complexity of the population at the current generation
+     */
+    private void addComplexity(double meanComplexity) {
+        complexitySum += meanComplexity;
+        complexityCount++;
+    }
+
+    /**
+     * Compute the average of the mean complexities of the population across the generations
+     * @return The average complexity, NaN if no generation was recorded
+     */
+    private double complexityAverage() {
+        return complexitySum / complexityCount;
+    }
+
     /**
      * Saves the state of this population instance to a given file on disk. If the file does not exist, it will be
      * created. This is useful for resuming the evolution with an older population.
+     *
+     * The population is written in a compact binary format: a header (magic number, version and compression mode),
+     * then the body: the innovation database, a table of all distinct Genomes (population, species members and
+     * leaders, best Genome) in the format of CompactGenomeCodec, the population-level values, then the species, which
+     * refer to Genomes by their index in the table, and a footer (the magic number again) marking a complete file.
+     * A compressed body is deflated, and preceded by its compressed and original lengths.
+     *
      * @param filePath The path to the file to save population into
      */
     public void saveToFile(String filePath) {
-        ObjectSaver.saveObjectToFile(this, filePath);
+        saveToFile(filePath, false, false);
+    }
+
+    /**
+     * Saves the state of this population instance to a given file on disk, see saveToFile(String)
+     *
+     * @param filePath The path to the file to save population into
+     * @param compress Whether to deflate the body of the file
+     * @param floatWeights Whether to save weights as floats rather than doubles, which loses precision
+     */
+    public void saveToFile(String filePath, boolean compress, boolean floatWeights) {
+        try (BinaryOutput out = BinaryOutput.toFile(Path.of(filePath))) {
+            if (!compress) {
+                writeTo(out, floatWeights);
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (BinaryOutput encoded = new BinaryOutput(Channels.newChannel(bytes))) {
+                    writeTo(encoded, floatWeights);
+                }
+                out.putBytes(compressEncoded(bytes.toByteArray()));
+            }
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the state of this population in binary form, with an uncompressed body, see saveToFile
+     *
+     * @param out The destination
+     * @param floatWeights Whether to write weights as floats rather than doubles, which loses precision
+     * @throws IOException If writing fails
+     */
+    public void writeTo(BinaryOutput out, boolean floatWeights) throws IOException {
+        out.putLong(FILE_MAGIC);
+        out.putVarInt(FILE_VERSION);
+        out.putByte(UNCOMPRESSED);
+        innovationDB.writeTo(out);
+        writeState(out, null, floatWeights);
+        out.putLong(FILE_MAGIC);
     }
 
     /**
-     * Reads (deserialize) a population instance from the given file, and returns the full Population object.
-     * Useful for loading previously saved populations.
+     * Compresses a population encoded by writeTo: deflates its body, and updates its header accordingly. Allows
+     * encoding a snapshot quickly, and compressing it later on another thread (see Checkpointer)
+     *
+     * @param encoded The population, as written by writeTo
+     * @return The population with a deflated body
+     */
+    static byte[] compressEncoded(byte[] encoded) {
+        int headerLength = Long.BYTES + VarInt.sizeOf(FILE_VERSION) + 1;
+        byte[] body = Compression.deflate(encoded, headerLength, encoded.length - headerLength);
+        ByteBuffer compressed = ByteBuffer.allocate(headerLength + 2 * Integer.BYTES + body.length);
+        compressed.put(encoded, 0, headerLength - 1).put(DEFLATED);
+        compressed.putInt(body.length).putInt(encoded.length - headerLength).put(body);
+        return compressed.array();
+    }
+
+    /**
+     * Writes the Genome table, the population values and the species. Given the Genome table of a previous write,
+     * Genomes already written there are only written as a reference to their previous index, followed by their
+     * fitness values, which may have changed since (delta mode, see CheckpointLog). The Genomes written in full are
+     * preceded by the dictionaries of their CompactGenomeCodec.
+     *
+     * @param out The destination
+     * @param previousIndexes The Genome table of a previous write, null to write all Genomes in full
+     * @param floatWeights Whether to write weights as floats rather than doubles, which loses precision
+     * @return The Genome table written: the index of each Genome, by reference
+     * @throws IOException If writing fails
+     */
+    Map<Genome, Integer> writeState(BinaryOutput out, Map<Genome, Integer> previousIndexes, boolean floatWeights)
+            throws IOException {
+
+        // Genome table: each distinct Genome (by reference) once, in order of first appearance
+        Map<Genome, Integer> genomeIndexes = new IdentityHashMap<>();
+        List<Genome> genomes = new ArrayList<>();
+        for (Genome genome : population) indexGenome(genome, genomeIndexes, genomes);
+        for (Species species : allSpecies) {
+            indexGenome(species.getLeader(), genomeIndexes, genomes);
+            for (Genome member : species.getMembers()) indexGenome(member, genomeIndexes, genomes);
+        }
+        if (bestGenome != null) indexGenome(bestGenome, genomeIndexes, genomes);
+
+        List<Genome> newGenomes = new ArrayList<>();
+        for (Genome genome : genomes)
+            if (previousIndexes == null || !previousIndexes.containsKey(genome)) newGenomes.add(genome);
+        CompactGenomeCodec codec = CompactGenomeCodec.forGenomes(newGenomes, floatWeights);
+        codec.writeDictionaries(out);
+
+        out.putVarInt(genomes.size());
+        for (Genome genome : genomes) {
+            if (previousIndexes != null) {
+                Integer previousIndex = previousIndexes.get(genome);
+                out.putVarInt(previousIndex != null ? previousIndex + 1 : 0);
+                if (previousIndex != null) {
+                    out.putDouble(genome.getFitness());
+                    out.putDouble(genome.getAdjustedFitness());
+                    out.putDouble(genome.getSpawnAmount());
+                    continue;
+                }
+            }
+            byte[] encoded = codec.encode(genome);
+            out.putVarInt(encoded.length);
+            out.putBytes(encoded);
+        }
+        out.putVarInt(population.size());
+        for (Genome genome : population) out.putVarInt(genomeIndexes.get(genome));
+        out.putVarInt(bestGenome != null ? genomeIndexes.get(bestGenome) + 1 : 0);
+
+        out.putVarInt(staleness);
+        out.putDouble(compatibilityThreshold);
+        out.putBoolean(maxFitnessSoFar != null);
+        if (maxFitnessSoFar != null) out.putDouble(maxFitnessSoFar);
+        out.putDouble(globalAdjustedFitnessTotal);
+        out.putDouble(globalAdjustedFitnessAverage);
+        out.putVarInt(age);
+        out.putBoolean(evaluated);
+
+        out.putDouble(pruneThreshold);
+        out.putBoolean(simplifyingPhase);
+        out.putVarInt(lastTransitionAge);
+        out.putDouble(complexitySum);
+        out.putLong(complexityCount);
+
+        out.putVarInt(allSpecies.size());
+        for (Species species : allSpecies) species.writeTo(out, genomeIndexes);
+
+        return genomeIndexes;
+    }
+
+    private static void indexGenome(Genome genome, Map<Genome, Integer> genomeIndexes, List<Genome> genomes) {
+        if (genomeIndexes.putIfAbsent(genome, genomes.size()) == null)
+            genomes.add(genome);
+    }
+
+    /**
+     * Reads a population instance from the given file, and returns the full Population object. Useful for loading
+     * previously saved populations. Files saved with Java serialization by older versions are still readable.
+     *
+     * The file is memory mapped (a compressed body is inflated in memory), and the genes of each Genome are decoded
+     * on first access only (see CompactGenomeCodec.decodeLazily), which spreads decoding over the evaluation threads of the
+     * first generation instead of holding up the start of a resumed run.
+     *
      * @param filePath The population file
-     * @return A Population instance deserialized from the file
+     * @return A Population instance read from the file, null if reading failed
      */
     public static Population readFromFile(String filePath) {
-        return ObjectSaver.loadFromFile(filePath, Population.class);
+        try (BinaryInput in = BinaryInput.mapFile(Path.of(filePath))) {
+            if (in.getLong() != FILE_MAGIC)
+                return ObjectSaver.loadFromFile(filePath, Population.class);
+            return readFrom(in);
+        } catch (IOException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a population written by writeTo, whose magic number was already read
+     *
+     * @param in The source, positioned after the magic number
+     * @return The population, in the state it was written
+     * @throws IOException If reading fails, or the file is not a complete population file of a supported version
+     */
+    private static Population readFrom(BinaryInput in) throws IOException {
+
+        int version = in.getVarInt();
+        if (version != FILE_VERSION)
+            throw new IOException("Unsupported population file version: " + version);
+
+        if (in.getByte() == DEFLATED) {
+            int compressedLength = in.getInt();
+            int length = in.getInt();
+            in = new BinaryInput(Compression.inflate(in.getBuffer(compressedLength), length));
+        }
+
+        Population population = readState(in, InnovationDB.readFrom(in), null, new ArrayList<>());
+
+        if (in.getLong() != FILE_MAGIC)
+            throw new IOException("Truncated or corrupted population file");
+        return population;
+    }
+
+    /**
+     * Reads the state written by writeState. Genomes are decoded lazily
+     *
+     * @param in The source
+     * @param innovationDB The innovation database of the population, already read
+     * @param previousGenomes The Genome table of the previous write, in delta mode, null otherwise
+     * @param genomes Receives the Genome table read, for reading the next delta
+     * @return The population, in the state it was written
+     * @throws IOException If reading fails
+     */
+    static Population readState(BinaryInput in, InnovationDB innovationDB, List<Genome> previousGenomes,
+                                List<Genome> genomes) throws IOException {
+
+        Population population = new Population(innovationDB);
+        CompactGenomeCodec codec = CompactGenomeCodec.readDictionaries(in);
+
+        int genomeCount = in.getVarInt();
+        for (int i = 0; i < genomeCount; i++) {
+            if (previousGenomes != null) {
+                int previousIndex = in.getVarInt() - 1;
+                if (previousIndex >= 0) {
+                    Genome genome = previousGenomes.get(previousIndex);
+                    genome.setFitness(in.getDouble());
+                    genome.setAdjustedFitness(in.getDouble());
+                    genome.setSpawnAmount(in.getDouble());
+                    genomes.add(genome);
+                    continue;
+                }
+            }
+            int size = in.getVarInt();
+            // Views of an in-memory source stay valid, and Genomes read from a channel are copied
+            genomes.add(codec.decodeLazily(in.getBuffer(size), size));
+        }
+
+        int populationSize = in.getVarInt();
+        for (int i = 0; i < populationSize; i++) population.population.add(genomes.get(in.getVarInt()));
+        int bestGenome = in.getVarInt() - 1;
+        population.bestGenome = bestGenome >= 0 ? genomes.get(bestGenome) : null;
+
+        population.staleness = in.getVarInt();
+        population.compatibilityThreshold = in.getDouble();
+        if (in.getBoolean()) population.maxFitnessSoFar = in.getDouble();
+        population.globalAdjustedFitnessTotal = in.getDouble();
+        population.globalAdjustedFitnessAverage = in.getDouble();
+        population.age = in.getVarInt();
+        population.evaluated = in.getBoolean();
+
+        population.pruneThreshold = in.getDouble();
+        population.simplifyingPhase = in.getBoolean();
+        population.lastTransitionAge = in.getVarInt();
+        population.complexitySum = in.getDouble();
+        population.complexityCount = in.getLong();
+
+        int speciesCount = in.getVarInt();
+        for (int i = 0; i < speciesCount; i++) population.allSpecies.add(Species.readFrom(in, genomes));
+
+        return population;
     }
 
     @Override
@@ -544,6 +1218,10 @@ public class Population implements Serializable {
         return age;
     }
 
+    public double getCompatibilityThreshold() {
+        return compatibilityThreshold;
+    }
+
     public List<Genome> getPopulationMembers() {
         return population;
     }
@@ -5,12 +5,15 @@ import engine.stats.ReproductionStats;
 import innovation.InnovationDB;
 import operators.Crossover;
 import operators.Mutation;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import util.BinaryInput;
+import util.BinaryOutput;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Species class: Defines a group of homogenous Genomes as a species. Species are used to implement speciation within
@@ -49,8 +52,9 @@ public class Species implements Comparable<Species>, Serializable {
     private boolean simplifyingPhase = false;
     // The age of the species at which the last transition to simplifying phase happened
     private int lastTransitionAge;
-    // Summary statistics for the mean complexity of the species
-    private final SummaryStatistics complexityStats = new SummaryStatistics();
+    // Sum and number of the mean complexities of the species across its generations
+    private double complexitySum;
+    private long complexityCount;
 
     /**
      * Creates a new Species using a given Genome, which becomes the leader of the new species
@@ -63,6 +67,13 @@ public class Species implements Comparable<Species>, Serializable {
         this.id = innovationDB.getNewSpeciesId();
     }
 
+    /**
+     * Creates an empty species with the given id, to be filled by readFrom
+     */
+    private Species(int id) {
+        this.id = id;
+    }
+
     /**
      * Adds a new member to this species
      * @param genome The new member Genome
@@ -71,6 +82,15 @@ public class Species implements Comparable<Species>, Serializable {
         this.members.add(genome);
     }
 
+    /**
+     * Removes the given member from this species. Members are matched by reference, not by structure.
+     * @param genome The member Genome to remove
+     * @return true if the Genome was a member of this species
+     */
+    public boolean removeMember(Genome genome) {
+        return members.removeIf(member -> member == genome);
+    }
+
     /**
      * Resets the leader of the species to the best member of the Species.
      */
@@ -139,83 +159,111 @@ public class Species implements Comparable<Species>, Serializable {
     public List<Genome> spawnOffsprings(InnovationDB innovationDB, NEATConfig config,
                                         ReproductionStats reproductionStats) {
 
-        // Phase switching immediately before reproduction. Each species will select the appropriate mode using the
-        // flag set by the phase selection method
-        if (config.speciesPhasedSearch() && !config.globalPhasedSearch()) {
-            if (simplifyingPhase) config.switchToSimplifying();
-            else config.switchToComplexifying();
-        }
+        // Each species reproduces against the configuration snapshot of its phase, selected by the phase selection
+        // method
+        config = selectSearchPhase(config);
 
         // The list of new offspring to generate
         List<Genome> offsprings = new ArrayList<>();
 
         // Elitism: Add the leader of the species first, if the spawnAmount > 0
-        if (spawnAmount > 0 && config.elitismInSpecies())
-            offsprings.add(new Genome(leader, innovationDB));
+        if (spawnAmount > 0 && config.elitismInSpecies()) {
+            Genome elite = new Genome(leader, innovationDB);
+            elite.setParentSpeciesId(id);
+            offsprings.add(elite);
+        }
 
-        // Spawn the required number of offsprings
-        while (offsprings.size() < spawnAmount) {
+        // Spawn the required number of offsprings, and add them to the new offsprings list
+        while (offsprings.size() < spawnAmount)
+            offsprings.add(spawnOffspring(members, innovationDB, config, reproductionStats));
 
-            // The offspring to spawn
-            Genome offspring;
+        // Increment species age
+        age++;
 
-            // Generate one offspring
-            // If there is only one member and the mutate-only probability is high enough, generate an offspring through
-            // mutation only
-            if (members.size() < 2 || PRNG.nextDouble() < config.mutateOnlyProbability()) { // Mutate only
+        return offsprings;
+    }
 
-                // Select a random Genome and clone it
-                Genome randomGenome = members.get(PRNG.nextInt(members.size()));
-                offspring = new Genome(randomGenome, innovationDB);
+    /**
+     * Spawns a single offspring Genome out of the given parents, either through mutation only or through mating
+     * followed by an optional mutation. The parents are usually the members of this species (after parent selection),
+     * but can be any subset of them, as in steady-state evolution where only evaluated members may reproduce.
+     *
+     * @param parents The Genomes allowed to take part in reproduction, must not be empty
+     * @param innovationDB The innovations DB, required for reproduction operators
+     * @param config The configuration instance containing all parameters
+     * @param reproductionStats For keeping the statistics related to the frequencies of operators application
+     * @return A new offspring Genome
+     */
+    public Genome spawnOffspring(List<Genome> parents, InnovationDB innovationDB, NEATConfig config,
+                                 ReproductionStats reproductionStats) {
 
-                // Mutate the newly created offspring
-                offspring = mutate(offspring, innovationDB, config, reproductionStats);
+        // The offspring to spawn
+        Genome offspring;
 
-                /*Stats*/ reproductionStats.mutationOnlyReproductions().plusOne();
-                /*Stats*/ reproductionStats.mutations().plusOne();
+        // Generate one offspring
+        // If there is only one parent and the mutate-only probability is high enough, generate an offspring through
+        // mutation only
+        if (parents.size() < 2 || PRNG.nextDouble() < config.mutateOnlyProbability()) { // Mutate only
 
-            } else { // In this case mating is a more meaningful choice
+            // Select a random Genome and clone it
+            Genome randomGenome = parents.get(PRNG.nextInt(parents.size()));
+            offspring = new Genome(randomGenome, innovationDB);
 
-                // Select two parents randomly
-                List<Genome> parents = new ArrayList<>(members);
-                Genome parentA = parents.remove(PRNG.nextInt(parents.size()));
-                Genome parentB = parents.remove(PRNG.nextInt(parents.size()));
+            // Mutate the newly created offspring
+            offspring = mutate(offspring, innovationDB, config, reproductionStats);
 
-                // Apply crossover
-                offspring = Crossover.multipointCrossover(parentA, parentB, config, innovationDB);
+            /*Stats*/ reproductionStats.mutationOnlyReproductions().plusOne();
+            /*Stats*/ reproductionStats.mutations().plusOne();
 
-                /*Stats*/ reproductionStats.matings().plusOne();
+        } else { // In this case mating is a more meaningful choice
 
-                // Mutate the resulting offspring only if the probability of mating only is low enough
-                if (PRNG.nextDouble() > config.mateOnlyProbability()) {
-                    offspring = mutate(offspring, innovationDB, config, reproductionStats);
+            // Select two parents randomly
+            List<Genome> candidates = new ArrayList<>(parents);
+            Genome parentA = candidates.remove(PRNG.nextInt(candidates.size()));
+            Genome parentB = candidates.remove(PRNG.nextInt(candidates.size()));
 
-                    /*Stats*/ reproductionStats.mutations().plusOne();
-                    /*Stats*/ reproductionStats.matingPlusMutationReproductions().plusOne();
-                } else
-                    /*Stats*/ reproductionStats.matingOnlyReproductions().plusOne();
-            }
+            // Apply crossover
+            offspring = Crossover.multipointCrossover(parentA, parentB, config, innovationDB);
 
-            if (config.fixDanglingNodes()) {
-                int danglingNodesFound;
-                do {
-                    danglingNodesFound = offspring.fixDanglingNodes(innovationDB, config.danglingRemoveProbability());
-                    if (!config.fixDanglingNodesStrict()) break;
-                } while (danglingNodesFound > 0);
-            }
-            // offspring.checkGenomeConsistency(innovationDB);
+            /*Stats*/ reproductionStats.matings().plusOne();
 
+            // Mutate the resulting offspring only if the probability of mating only is low enough
+            if (PRNG.nextDouble() > config.mateOnlyProbability()) {
+                offspring = mutate(offspring, innovationDB, config, reproductionStats);
 
-            // Add the new offspring to the new offsprings list
-            offsprings.add(offspring);
+                /*Stats*/ reproductionStats.mutations().plusOne();
+                /*Stats*/ reproductionStats.matingPlusMutationReproductions().plusOne();
+            } else
+                /*Stats*/ reproductionStats.matingOnlyReproductions().plusOne();
+        }
 
-            /*Stats*/ reproductionStats.totalReproductions().plusOne();
+        if (config.fixDanglingNodes()) {
+            int danglingNodesFound;
+            do {
+                danglingNodesFound = offspring.fixDanglingNodes(innovationDB, config.danglingRemoveProbability());
+                if (!config.fixDanglingNodesStrict()) break;
+            } while (danglingNodesFound > 0);
         }
+        // offspring.checkGenomeConsistency(innovationDB);
 
-        // Increment species age
-        age++;
+        /*Stats*/ reproductionStats.totalReproductions().plusOne();
 
-        return offsprings;
+        // Remember the lineage of the offspring, used by speciation
+        offspring.setParentSpeciesId(id);
+
+        return offspring;
+    }
+
+    /**
+     * In a species phased search, returns the configuration snapshot of the phase this species is in, to reproduce
+     * against. The given configuration otherwise
+     *
+     * @param config The configuration instance containing all parameters
+     * @return The configuration to reproduce against
+     */
+    public NEATConfig selectSearchPhase(NEATConfig config) {
+        if (config.speciesPhasedSearch() && !config.globalPhasedSearch()) return config.forPhase(simplifyingPhase);
+        return config;
     }
 
     /**
@@ -335,8 +383,7 @@ public class Species implements Comparable<Species>, Serializable {
      * and in the simplification phase the species will reproduce using subtractive mutations.
      * This method is identical to the globalPhaseSelection method of the population class except for the way switching
      * happens. In this method a simple flag is used to switch phases, and the flag is used by the reproduction method
-     * to determine phase before reproduction. This is to avoid one species changing the phase of other species.
-     * (TODO Find a better way)
+     * to select the configuration snapshot of the phase (see selectSearchPhase).
      *
      * @param config The configuration instance containing all parameters.
      */
@@ -345,13 +392,13 @@ public class Species implements Comparable<Species>, Serializable {
         double meanComplexity = meanComplexity();
 
         if (age == 0) {
-            complexityStats.addValue(meanComplexity);
+            addComplexity(meanComplexity);
             pruneThreshold = meanComplexity + config.meanComplexityThreshold();
         }
 
-        double previousMeanComplexityAvg = complexityStats.getMean();
+        double previousMeanComplexityAvg = complexityAverage();
 
-        if (age >= 1) complexityStats.addValue(meanComplexity);
+        if (age >= 1) addComplexity(meanComplexity);
 
         if (!simplifyingPhase) {
             if ((meanComplexity > pruneThreshold) && (staleness > config.minStaleComplexifyGenerations())) {
@@ -364,7 +411,7 @@ public class Species implements Comparable<Species>, Serializable {
 
         else {
             if (((age - lastTransitionAge) >= config.minSimplifyGenerations()) && (meanComplexity < pruneThreshold)
-                    && (complexityStats.getMean() >= previousMeanComplexityAvg)) {
+                    && (complexityAverage() >= previousMeanComplexityAvg)) {
                 // System.out.println(age + " Switching --> Complexifying " + meanComplexity + " < " + pruneThreshold
                 //         + " , S:" + id);
 
@@ -386,6 +433,23 @@ public class Species implements Comparable<Species>, Serializable {
         return sum / members.size();
     }
 
+    /**
+     * Adds the mean complexity of a generation to the complexity history of the species
+     * @param meanComplexity The mean complexity of the members at the current generation
+     */
+    private void addComplexity(double meanComplexity) {
+        complexitySum += meanComplexity;
+        complexityCount++;
+    }
+
+    /**
+     * Compute the average of the mean complexities of the species across its generations
+     * @return The average complexity, NaN if no generation was recorded
+     */
+    private double complexityAverage() {
+        return complexitySum / complexityCount;
+    }
+
     @Override
     public String toString() {
         return "Species " + id +
@@ -424,6 +488,67 @@ public class Species implements Comparable<Species>, Serializable {
         return builder.toString();
     }
 
+    /**
+     * Writes the state of this species in binary form, the counterpart of readFrom. Members and leader are written as
+     * indexes into the Genome table of the enclosing population file
+     *
+     * @param out The destination
+     * @param genomeIndexes The index of each Genome in the Genome table, by reference
+     * @throws IOException If writing fails
+     */
+    void writeTo(BinaryOutput out, Map<Genome, Integer> genomeIndexes) throws IOException {
+
+        out.putVarInt(id);
+        out.putVarInt(genomeIndexes.get(leader));
+        out.putVarInt(members.size());
+        for (Genome member : members) out.putVarInt(genomeIndexes.get(member));
+
+        out.putDouble(totalAdjustedFitness);
+        out.putDouble(averageAdjustedFitness);
+        out.putBoolean(maxFitnessSoFar != null);
+        if (maxFitnessSoFar != null) out.putDouble(maxFitnessSoFar);
+        out.putVarInt(staleness);
+        out.putVarInt(spawnAmount);
+        out.putVarInt(age);
+
+        out.putDouble(pruneThreshold);
+        out.putBoolean(simplifyingPhase);
+        out.putVarInt(lastTransitionAge);
+        out.putDouble(complexitySum);
+        out.putLong(complexityCount);
+    }
+
+    /**
+     * Reads a species written by writeTo
+     *
+     * @param in The source
+     * @param genomes The Genome table of the enclosing population file
+     * @return The species, in the state it was written
+     * @throws IOException If reading fails
+     */
+    static Species readFrom(BinaryInput in, List<Genome> genomes) throws IOException {
+
+        Species species = new Species(in.getVarInt());
+        species.leader = genomes.get(in.getVarInt());
+        int memberCount = in.getVarInt();
+        for (int i = 0; i < memberCount; i++) species.members.add(genomes.get(in.getVarInt()));
+
+        species.totalAdjustedFitness = in.getDouble();
+        species.averageAdjustedFitness = in.getDouble();
+        if (in.getBoolean()) species.maxFitnessSoFar = in.getDouble();
+        species.staleness = in.getVarInt();
+        species.spawnAmount = in.getVarInt();
+        species.age = in.getVarInt();
+
+        species.pruneThreshold = in.getDouble();
+        species.simplifyingPhase = in.getBoolean();
+        species.lastTransitionAge = in.getVarInt();
+        species.complexitySum = in.getDouble();
+        species.complexityCount = in.getLong();
+
+        return species;
+    }
+
     /**
      * Species are compared by the fitness of their leader
      * @param species The species to compare with
@@ -439,6 +564,10 @@ public class Species implements Comparable<Species>, Serializable {
         return this.leader;
     }
 
+    public void setLeader(Genome leader) {
+        this.leader = leader;
+    }
+
     public List<Genome> getMembers() {
         return members;
     }
@@ -0,0 +1,120 @@
+package engine;
+
+import encoding.Genome;
+import encoding.LinkGene;
+
+import java.util.*;
+
+/**
+ * An approximate nearest-species index over species leaders, based on MinHash and locality sensitive hashing (LSH) of
+ * the sets of link innovation ids. The MinHash signature of a Genome, made of bands * rows hash values, is split into
+ * bands; two Genomes whose link sets are similar (high Jaccard similarity, hence few unmatched links) are likely to
+ * share the key of at least one band. Looking up the keys of a Genome returns the leaders sharing a band with it, which
+ * are only candidates: they must still be checked exactly with the compatibility test.
+ *
+ * More rows per band make candidates more selective, more bands make them more exhaustive. Hash functions are derived
+ * from fixed seeds, hence the index doesn't draw from the PRNG and leaves the course of evolution unchanged.
+ *
+ * The index is not thread-safe for additions, but can be queried concurrently once built.
+ *
+ * @author Acemad
+ */
+class SpeciesIndex {
+
+    private final int bands;
+    private final int rows;
+
+    // Multiply-add hash functions, one per signature value: h(x) = x * multipliers[i] + increments[i]
+    private final long[] multipliers;
+    private final long[] increments;
+
+    // For each band, the leaders (by order of addition) having each band key
+    private final List<Map<Long, List<Integer>>> bandBuckets = new ArrayList<>();
+    private int size = 0;
+
+    /**
+     * Creates an empty index
+     *
+     * @param bands The number of bands of the signatures
+     * @param rows The number of hash values per band
+     */
+    SpeciesIndex(int bands, int rows) {
+        this.bands = bands;
+        this.rows = rows;
+        for (int band = 0; band < bands; band++)
+            bandBuckets.add(new HashMap<>());
+
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = mix(2 * i + 1) | 1;
+            increments[i] = mix(2 * i + 2);
+        }
+    }
+
+    /**
+     * Computes the band keys of a Genome: the MinHash signature of its link ids, with each band hashed into a key
+     *
+     * @param genome The Genome to hash
+     * @return The key of each band
+     */
+    long[] bandKeys(Genome genome) {
+
+        long[] signature = new long[bands * rows];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (LinkGene linkGene : genome.getLinkGenes()) {
+            long id = mix(linkGene.getId());
+            for (int i = 0; i < signature.length; i++)
+                signature[i] = Math.min(signature[i], id * multipliers[i] + increments[i]);
+        }
+
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++)
+                key = mix(key ^ signature[band * rows + row]);
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Adds a leader to the index. Leaders are identified by their order of addition, starting at 0
+     *
+     * @param keys The band keys of the leader
+     */
+    void add(long[] keys) {
+        for (int band = 0; band < bands; band++)
+            bandBuckets.get(band).computeIfAbsent(keys[band], key -> new ArrayList<>()).add(size);
+        size++;
+    }
+
+    /**
+     * Returns the leaders sharing at least one band key with a Genome
+     *
+     * @param keys The band keys of the Genome
+     * @return The indexes of the candidate leaders, in ascending order
+     */
+    int[] candidates(long[] keys) {
+        BitSet candidates = new BitSet(size);
+        for (int band = 0; band < bands; band++) {
+            List<Integer> bucket = bandBuckets.get(band).get(keys[band]);
+            if (bucket != null)
+                for (int leader : bucket) candidates.set(leader);
+        }
+
+        int[] leaders = new int[candidates.cardinality()];
+        for (int i = 0, leader = candidates.nextSetBit(0); leader >= 0; leader = candidates.nextSetBit(leader + 1))
+            leaders[i++] = leader;
+        return leaders;
+    }
+
+    /**
+     * The SplitMix64 finalizer, used for scrambling ids and seeds
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,493 @@
+package engine;
+
+import encoding.Genome;
+import engine.stats.EvolutionStats;
+import engine.stats.ReproductionStats;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A steady-state (rtNEAT-style) evolution engine. Instead of evaluating and replacing the whole population in
+ * generational steps, each time a worker finishes evaluating a Genome, the lowest ranked eligible Genome of the
+ * population is replaced by a fresh offspring of a species chosen according to its adjusted fitness. The offspring is
+ * speciated incrementally and immediately submitted for evaluation, hence no worker ever waits on a generational
+ * barrier.
+ *
+ * Only evaluated Genomes are eligible for replacement and for reproduction. Replacements start once the proportion of
+ * evaluated Genomes in the population reaches steadyStateEligibleProportion. Every populationSize replacements count as
+ * one generation: evolution statistics are updated, the staleness and the phase of a global phased search are updated,
+ * and the population's age is incremented. Offspring are spawned against the configuration of the current phase.
+ * Species phased search is not supported, since species do not go through generations here.
+ *
+ * Workers share a single lock, held only for bookkeeping: the worst Genome and the species selection weights are kept
+ * up to date as Genomes come and go, and offspring are built outside the lock, each worker drawing from its own random
+ * stream. Only the removal of the worst Genome, the choice of the parents and the speciation of the offspring are
+ * serialized.
+ *
+ * @author Acemad
+ */
+public class SteadyStateEvolution {
+
+    private final Population population;
+    private final NEATConfig config;
+    private final EvolutionStats evolutionStats;
+
+    // Guards every access to the population, its species, and the bookkeeping below. Offspring are spawned outside of
+    // it, the innovation database being thread-safe
+    private final Object lock = new Object();
+
+    // Genomes whose evaluation is complete, and the species each member of the population belongs to. Both are keyed
+    // by reference, as Genomes with identical structure are distinct individuals.
+    private final Set<Genome> evaluatedGenomes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Genome, Species> genomeSpecies = new IdentityHashMap<>();
+
+    // The evaluated members and selection weight of each species, updated whenever the species changes
+    private final Map<Species, SpeciesState> speciesStates = new IdentityHashMap<>();
+    private double totalSelectionWeight;
+
+    // Species ranked by the adjusted fitness of their replacement candidate, the lowest first: the first species holds
+    // the worst Genome of the population
+    private final TreeSet<Species> replacementRanking = new TreeSet<>(
+            Comparator.comparingDouble((Species species) -> speciesStates.get(species).replacementKey)
+                    .thenComparingInt(Species::getId));
+
+    // Reproduction statistics of the current (pseudo) generation
+    private ReproductionStats reproductionStats = new ReproductionStats();
+
+    private ExecutorService executorService;
+    private EvaluationFunction evaluationFunction;
+    private EvaluationControl control;
+    private CountDownLatch finished;
+
+    private long maxEvaluations;
+    private long completedEvaluations;
+    private long replacements;
+    private int pendingEvaluations;
+    private boolean stopping;
+
+    /**
+     * Creates a steady-state evolution engine operating on the given population
+     *
+     * @param population The population to evolve
+     * @param config The configuration instance containing all parameters
+     * @param evolutionStats The evolution statistics to update every populationSize replacements
+     * @throws IllegalArgumentException If the configuration enables a species phased search
+     */
+    public SteadyStateEvolution(Population population, NEATConfig config, EvolutionStats evolutionStats) {
+        if (config.speciesPhasedSearch() && !config.globalPhasedSearch())
+            throw new IllegalArgumentException("Species phased search is not supported by steady-state evolution");
+        this.population = population;
+        this.config = config;
+        this.evolutionStats = evolutionStats;
+    }
+
+    /**
+     * Runs steady-state evolution until the given number of Genome evaluations is completed. The initial population is
+     * speciated and submitted for evaluation, then each completed evaluation triggers the replacement of one Genome.
+     *
+     * @param evaluationFunction The fitness function for evaluating Genomes
+     * @param evaluations The total number of evaluations to perform
+     */
+    public void run(EvaluationFunction evaluationFunction, long evaluations) {
+        run(evaluationFunction, evaluations, null);
+    }
+
+    /**
+     * Runs steady-state evolution until the given number of Genome evaluations is completed, or until the given
+     * control signals the end of the run, in which case outstanding evaluations are skipped.
+     *
+     * @param evaluationFunction The fitness function for evaluating Genomes
+     * @param evaluations The total number of evaluations to perform
+     * @param control The termination control of the run, null if none
+     */
+    public void run(EvaluationFunction evaluationFunction, long evaluations, EvaluationControl control) {
+
+        this.evaluationFunction = evaluationFunction;
+        this.control = control;
+        this.maxEvaluations = evaluations;
+        this.completedEvaluations = 0;
+        this.stopping = false;
+        this.finished = new CountDownLatch(1);
+
+        int threads = config.evaluationThreads() == 0 ?
+                Runtime.getRuntime().availableProcessors() : config.evaluationThreads();
+        // Workers spawn offspring concurrently, each from its own stream seeded by the thread creating the worker
+        ThreadFactory workerFactory = runnable -> {
+            long seed = PRNG.nextLong();
+            return new Thread(() -> {
+                PRNG.bindToCurrentThread(PRNG.newStream(seed));
+                runnable.run();
+            });
+        };
+        executorService = Executors.newFixedThreadPool(threads, workerFactory);
+
+        synchronized (lock) {
+            // Speciate the initial population, all members are considered unevaluated
+            population.speciate(config);
+            evaluatedGenomes.clear();
+            genomeSpecies.clear();
+            speciesStates.clear();
+            replacementRanking.clear();
+            totalSelectionWeight = 0;
+            for (Species species : population.getSpecies()) {
+                speciesStates.put(species, new SpeciesState());
+                for (Genome member : species.getMembers())
+                    genomeSpecies.put(member, species);
+            }
+
+            // Submit every member for evaluation
+            for (Genome genome : population.getPopulationMembers())
+                submit(genome);
+        }
+
+        // Wait until all evaluations are done
+        try {
+            finished.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        synchronized (lock) {
+            // Leave the population in the same state as after a generational evaluation
+            population.getPopulationMembers().sort(Collections.reverseOrder());
+            for (Species species : population.getSpecies())
+                species.resetLeader();
+            population.getSpecies().sort(Collections.reverseOrder());
+        }
+    }
+
+    /**
+     * Submits a Genome for evaluation on the worker pool. Must be called while holding the lock.
+     * @param genome The Genome to evaluate
+     */
+    private void submit(Genome genome) {
+        pendingEvaluations++;
+        executorService.execute(() -> {
+            Double fitness = null;
+            try {
+                if (!isStopping() && (control == null || !control.shouldStop())) {
+                    fitness = evaluationFunction.evaluate(genome);
+                    if (control != null) control.report(fitness);
+                }
+            } catch (Exception exception) {
+                exception.printStackTrace();
+                fitness = 0.0;
+            } finally {
+                onEvaluated(genome, fitness);
+            }
+        });
+    }
+
+    private boolean isStopping() {
+        synchronized (lock) {
+            return stopping;
+        }
+    }
+
+    /**
+     * Called by a worker once a Genome is evaluated. Records the fitness of the Genome, and if enough Genomes are
+     * evaluated, replaces the worst eligible Genome with a new offspring, which is then submitted for evaluation. The
+     * offspring is spawned without holding the lock.
+     *
+     * @param genome The evaluated Genome
+     * @param fitness Its fitness, or null if the evaluation was skipped
+     */
+    private void onEvaluated(Genome genome, Double fitness) {
+
+        Replacement replacement = null;
+        Genome offspring = null;
+        try {
+            synchronized (lock) {
+                replacement = recordEvaluation(genome, fitness);
+            }
+            if (replacement != null)
+                offspring = replacement.parentSpecies.spawnOffspring(replacement.parents,
+                        population.getInnovations(), replacement.config, replacement.reproductionStats);
+        } catch (RuntimeException exception) {
+            exception.printStackTrace();
+        } finally {
+            synchronized (lock) {
+                if (offspring != null) addOffspring(offspring, replacement.reproductionStats);
+                if (--pendingEvaluations == 0)
+                    finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * Records the fitness of an evaluated Genome, and prepares the replacement of the worst Genome if enough Genomes
+     * are evaluated. Must be called while holding the lock.
+     *
+     * @param genome The evaluated Genome
+     * @param fitness Its fitness, or null if the evaluation was skipped
+     * @return The replacement to carry out, null if none
+     */
+    private Replacement recordEvaluation(Genome genome, Double fitness) {
+
+        // The genome might have been replaced while it was evaluated, ignore it in this case
+        if (fitness == null || !genomeSpecies.containsKey(genome)) return null;
+
+        genome.setFitness(fitness);
+        evaluatedGenomes.add(genome);
+        completedEvaluations++;
+
+        Species species = genomeSpecies.get(genome);
+        speciesStates.get(species).addEvaluated(genome);
+
+        // The previous best genome becomes a replacement candidate of its species
+        Genome previousBest = population.getBestGenome();
+        population.updateBestGenome(genome);
+        if (population.getBestGenome() != previousBest && genomeSpecies.containsKey(previousBest))
+            refresh(genomeSpecies.get(previousBest));
+        refresh(species);
+
+        // A newly evaluated genome becomes the leader of its species if it outperforms the actual leader
+        if (!evaluatedGenomes.contains(species.getLeader()) ||
+                genome.getFitness() > species.getLeader().getFitness())
+            species.setLeader(genome);
+
+        if (completedEvaluations >= maxEvaluations || (control != null && control.shouldStop()))
+            stopping = true;
+        else if (evaluatedGenomes.size() >= config.steadyStateEligibleProportion() * config.populationSize())
+            return prepareReplacement();
+        return null;
+    }
+
+    /**
+     * Selects the parents of the next offspring out of a species selected proportionally to its adjusted fitness,
+     * provided a Genome can be replaced. The Genome to replace is only removed once the offspring is spawned (see
+     * addOffspring). Must be called while holding the lock.
+     *
+     * @return The replacement, whose offspring is to be spawned, null if no Genome can be replaced
+     */
+    private Replacement prepareReplacement() {
+
+        // 1. A replacement needs an eligible genome to replace
+        if (replacementRanking.isEmpty()) return null;
+
+        // 2. Choose the parent species and its parents, the offspring is spawned out of the lock
+        Species parentSpecies = selectParentSpecies();
+        if (parentSpecies == null) return null;
+
+        return new Replacement(parentSpecies, selectParents(parentSpecies),
+                config.globalPhasedSearch() ? config.forPhase(population.isSimplifyingPhase()) : config);
+    }
+
+    /**
+     * Replaces the evaluated Genome with the lowest adjusted fitness (the best genome of the population is never
+     * removed) with a newly spawned offspring, speciates the offspring incrementally, and submits it for evaluation.
+     * The offspring is dropped if no Genome is eligible for replacement anymore. Must be called while holding the lock.
+     *
+     * @param offspring The offspring
+     * @param offspringStats The reproduction statistics of the offspring
+     */
+    private void addOffspring(Genome offspring, ReproductionStats offspringStats) {
+
+        // Find the lowest ranked eligible genome, and remove it from the population and from its species. Ranking is
+        // done by adjusted fitness, in order to protect the members of small species
+        if (replacementRanking.isEmpty()) return;
+        removeGenome(speciesStates.get(replacementRanking.first()).replacementCandidate());
+
+        // The offspring is not evaluated yet, it must not carry the fitness of its parent
+        offspring.setFitness(0);
+        offspring.setAdjustedFitness(0);
+        reproductionStats.add(offspringStats);
+
+        population.addGenome(offspring);
+        Species species = population.speciateGenome(offspring, config);
+        genomeSpecies.put(offspring, species);
+        speciesStates.computeIfAbsent(species, newSpecies -> new SpeciesState());
+        refresh(species);
+        submit(offspring);
+
+        // Each populationSize replacements form a generation
+        if (++replacements % config.populationSize() == 0)
+            endGeneration();
+    }
+
+    /**
+     * Removes a Genome from the population and from its species. An emptied species is removed, and the leader of a
+     * species is replaced if it's the removed Genome.
+     * @param genome The Genome to remove
+     */
+    private void removeGenome(Genome genome) {
+
+        Species species = genomeSpecies.remove(genome);
+        SpeciesState state = speciesStates.get(species);
+        if (evaluatedGenomes.remove(genome)) state.removeEvaluated(genome);
+        population.removeGenome(genome);
+        species.removeMember(genome);
+
+        if (species.getMembers().isEmpty()) {
+            population.getSpecies().remove(species);
+            refresh(species);
+            speciesStates.remove(species);
+            return;
+        }
+
+        // Elect the best evaluated member as a new leader, or any member if none is evaluated yet
+        if (species.getLeader() == genome)
+            species.setLeader(state.evaluated.isEmpty() ? species.getMembers().get(0) : state.evaluated.last());
+        refresh(species);
+    }
+
+    /**
+     * Updates the selection weight and the replacement rank of a species after a change of its members, or of the
+     * best genome of the population. An emptied species is dropped from both.
+     * @param species The species
+     */
+    private void refresh(Species species) {
+
+        SpeciesState state = speciesStates.get(species);
+
+        // The rank is keyed by the cached values, hence the species is taken out before they change
+        if (state.replacementKey != null) replacementRanking.remove(species);
+        totalSelectionWeight -= state.selectionWeight;
+        state.selectionWeight = 0;
+        state.replacementKey = null;
+
+        int size = species.getSize();
+        if (size == 0 || state.evaluated.isEmpty()) return;
+
+        state.selectionWeight = state.fitnessSum / size;
+        totalSelectionWeight += state.selectionWeight;
+
+        Genome candidate = state.replacementCandidate();
+        if (candidate != null) {
+            state.replacementKey = candidate.getFitness() / size;
+            replacementRanking.add(species);
+        }
+    }
+
+    /**
+     * Selects a species through roulette wheel selection, each species is selected with a probability proportional to
+     * its adjusted fitness (the sum of the adjusted fitness of its evaluated members). Species without evaluated
+     * members cannot reproduce.
+     *
+     * @return The selected species, or null if no species can reproduce
+     */
+    private Species selectParentSpecies() {
+
+        List<Species> candidates = new ArrayList<>();
+        for (Species species : population.getSpecies())
+            if (!speciesStates.get(species).evaluated.isEmpty()) candidates.add(species);
+
+        if (candidates.isEmpty()) return null;
+        // No fitness information, select uniformly
+        if (totalSelectionWeight <= 0) return candidates.get(PRNG.nextInt(candidates.size()));
+
+        double pick = PRNG.nextDouble() * totalSelectionWeight;
+        for (Species species : candidates) {
+            pick -= speciesStates.get(species).selectionWeight;
+            if (pick <= 0) return species;
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /**
+     * Selects the parents of the next offspring from the evaluated members of the given species, keeping the top
+     * parentsSurvivalThreshold percent, as in generational reproduction.
+     *
+     * @param species The parent species
+     * @return A non-empty list of parents
+     */
+    private List<Genome> selectParents(Species species) {
+
+        TreeSet<Genome> evaluatedMembers = speciesStates.get(species).evaluated;
+        int numberOfParents = (int) Math.floor(config.parentsSurvivalThreshold() * evaluatedMembers.size() + 1);
+
+        List<Genome> parents = new ArrayList<>();
+        for (Iterator<Genome> best = evaluatedMembers.descendingIterator();
+             best.hasNext() && parents.size() < numberOfParents; )
+            parents.add(best.next());
+        return parents;
+    }
+
+    /**
+     * Closes a pseudo-generation: computes the adjusted fitness of the species, updates the evolution statistics, the
+     * staleness and the search phase, adapts the compatibility threshold and increments the age of the population.
+     */
+    private void endGeneration() {
+
+        // Offspring being evaluated are left out of the fitness statistics
+        Set<Genome> unevaluatedGenomes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Genome genome : population.getPopulationMembers())
+            if (!evaluatedGenomes.contains(genome)) unevaluatedGenomes.add(genome);
+        population.setUnevaluatedGenomes(unevaluatedGenomes);
+
+        population.adjustFitness();
+        evolutionStats.updateEvolutionStats(population);
+        evolutionStats.updateReproductionStats(reproductionStats);
+        reproductionStats = new ReproductionStats();
+
+        // The offspring spawned from now on use the configuration of the selected phase
+        population.updateStaleness();
+        population.selectSearchPhase(config);
+        population.adaptCompatibilityThreshold(config);
+        population.incrementAge();
+    }
+
+    /**
+     * The bookkeeping of a species: its evaluated members ranked by fitness, the sum of their fitness, its weight in
+     * parent species selection and the key of its replacement candidate, cached as of the last refresh
+     */
+    private class SpeciesState {
+
+        private final TreeSet<Genome> evaluated = new TreeSet<>(
+                Comparator.<Genome>naturalOrder().thenComparingInt(Genome::getId));
+        private double fitnessSum;
+        private double selectionWeight;
+        private Double replacementKey;                      // Null if the species has no replacement candidate
+
+        private void addEvaluated(Genome genome) {
+            evaluated.add(genome);
+            fitnessSum += genome.getFitness();
+        }
+
+        private void removeEvaluated(Genome genome) {
+            evaluated.remove(genome);
+            fitnessSum = evaluated.isEmpty() ? 0 : fitnessSum - genome.getFitness();
+        }
+
+        /**
+         * @return The lowest ranked evaluated member, other than the best genome of the population, null if none
+         */
+        private Genome replacementCandidate() {
+            for (Genome genome : evaluated)
+                if (genome != population.getBestGenome()) return genome;
+            return null;
+        }
+    }
+
+    /**
+     * A replacement prepared under the lock: the parents of the offspring, and the configuration of the search phase
+     * of their species
+     */
+    private static class Replacement {
+
+        private final Species parentSpecies;
+        private final List<Genome> parents;
+        private final NEATConfig config;
+        private final ReproductionStats reproductionStats = new ReproductionStats();
+
+        private Replacement(Species parentSpecies, List<Genome> parents, NEATConfig config) {
+            this.parentSpecies = parentSpecies;
+            this.parents = parents;
+            this.config = config;
+        }
+    }
+
+    public long getCompletedEvaluations() {
+        return completedEvaluations;
+    }
+
+    public long getReplacements() {
+        return replacements;
+    }
+}
@@ -0,0 +1,197 @@
+package engine.distributed;
+
+import encoding.Genome;
+import encoding.GenomeCodec;
+import engine.EvaluationContext;
+import engine.EvaluationFunction;
+import engine.NEATConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An evaluation function that delegates evaluations to a pool of worker JVMs. Each evaluation borrows an idle worker,
+ * sends it the Genome and waits for the fitness, hence the evaluation threads of the scheduler only wait while the work
+ * is done in other processes. A crash of the fitness function (e.g. in native code) only brings down its worker.
+ *
+ * With sharedMemoryTransport enabled, genomes are written in binary form (see GenomeCodec) to a slot of a memory
+ * mapped ring shared with the workers, which write the fitness back into the same slot: the workers' standard streams
+ * only carry slot indexes. Genomes larger than a slot, or all genomes when the transport is disabled, are sent through
+ * the standard streams in the same binary form.
+ *
+ * Workers that exit, or stop sending heartbeats for longer than the heartbeat timeout, are replaced by fresh ones, and
+ * the Genome they were evaluating is retried once on another worker. A worker whose evaluation is cancelled (time
+ * budget overrun) is replaced as well. Workers that cannot be restarted are lost, once all of them are lost every
+ * evaluation fails. Failed evaluations receive timeoutPenaltyFitness.
+ *
+ * Since each worker evaluates one Genome at a time, evaluationThreads should be set to evaluationProcesses.
+ *
+ * @author Acemad
+ */
+public class DistributedEvaluationFunction implements EvaluationFunction, AutoCloseable {
+
+    private final String functionReference;
+    private final String jvmOptions;
+    private final long heartbeatInterval;
+    private final long heartbeatTimeout;
+    private final SharedMemoryRing ring;          // Null when genomes are passed through the standard streams
+    private final double penaltyFitness;          // Fitness of Genomes whose evaluation failed
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private final BlockingQueue<WorkerProcess> idleWorkers = new LinkedBlockingQueue<>();
+    private final List<WorkerProcess> workers = new ArrayList<>();
+    private final AtomicInteger liveWorkers = new AtomicInteger();  // Workers started, minus those lost
+
+    /**
+     * Starts the worker processes
+     *
+     * @param functionReference The reference of the fitness function, "package.Class::method"
+     * @param config The configuration instance containing the worker parameters
+     * @throws IOException If a worker process cannot be started
+     */
+    public DistributedEvaluationFunction(String functionReference, NEATConfig config) throws IOException {
+
+        // Fail early if the function cannot be resolved
+        FunctionReference.resolve(functionReference);
+
+        this.functionReference = functionReference;
+        this.jvmOptions = config.workerJvmOptions();
+        this.heartbeatInterval = config.workerHeartbeatInterval();
+        this.heartbeatTimeout = config.workerHeartbeatTimeout();
+        this.penaltyFitness = config.timeoutPenaltyFitness();
+
+        // Two slots per worker, so genomes can be written while all workers are busy
+        this.ring = config.sharedMemoryTransport() ?
+                new SharedMemoryRing(2 * config.evaluationProcesses(), config.sharedMemorySlotSize()) : null;
+
+        for (int i = 0; i < config.evaluationProcesses(); i++) {
+            idleWorkers.add(startWorker());
+            liveWorkers.incrementAndGet();
+        }
+    }
+
+    private WorkerProcess startWorker() throws IOException {
+        WorkerProcess worker =
+                new WorkerProcess(functionReference, jvmOptions, heartbeatInterval, heartbeatTimeout, ring);
+        synchronized (workers) {
+            workers.add(worker);
+        }
+        return worker;
+    }
+
+    /**
+     * Replaces a failed worker by a new one, the failed worker is lost if the new one can't be started
+     * @param worker The failed worker
+     * @return The new worker, or null if it couldn't be started
+     */
+    private WorkerProcess restartWorker(WorkerProcess worker) {
+        worker.destroy();
+        synchronized (workers) {
+            workers.remove(worker);
+        }
+        try {
+            return startWorker();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+            if (liveWorkers.decrementAndGet() == 0) System.err.println("All evaluation workers are lost");
+            return null;
+        }
+    }
+
+    /**
+     * Borrows an idle worker, waiting for one as long as some workers are alive
+     * @return An idle worker, or null if all workers are lost
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private WorkerProcess takeWorker() throws InterruptedException {
+        while (liveWorkers.get() > 0) {
+            // Waiting threads can't be woken up when the last worker is lost, hence the periodic check
+            WorkerProcess worker = idleWorkers.poll(heartbeatInterval, TimeUnit.MILLISECONDS);
+            if (worker != null) return worker;
+        }
+        return null;
+    }
+
+    @Override
+    public double evaluate(Genome genome) {
+        return evaluate(genome, new EvaluationContext(0));
+    }
+
+    /**
+     * Evaluates the Genome on an idle worker, retrying once on another worker if the first one fails
+     *
+     * @param genome The Genome to evaluate
+     * @param context The context of the evaluation
+     * @return The fitness of the Genome, the penalty fitness if the evaluation failed twice, was cancelled, or all
+     * workers are lost
+     */
+    @Override
+    public double evaluate(Genome genome, EvaluationContext context) {
+
+        // Write the Genome to a slot of the ring when it fits, otherwise send it inline
+        int slot = -1;
+        byte[] genomeBytes = null;
+        if (ring != null) {
+            try {
+                slot = ring.acquire();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return penaltyFitness;
+            }
+        }
+
+        try {
+            for (int attempt = 0; attempt < 2 && !context.isCancelled(); attempt++) {
+                WorkerProcess worker;
+                try {
+                    worker = takeWorker();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return penaltyFitness;
+                }
+                if (worker == null) break;
+
+                // Each attempt has its own id, so a late result of a failed attempt is never mistaken for the next
+                long id = requestIds.incrementAndGet();
+                boolean shared = slot >= 0 && ring.writeGenome(slot, id, genome);
+                if (!shared && genomeBytes == null) genomeBytes = GenomeCodec.encode(genome);
+
+                try {
+                    double fitness = shared ?
+                            worker.evaluate(id, slot, context) : worker.evaluate(id, genomeBytes, context);
+                    idleWorkers.add(worker);
+                    return fitness;
+                } catch (WorkerProcess.WorkerFailure failure) {
+                    System.err.println(failure.getMessage() + ", restarting it");
+                    WorkerProcess newWorker = restartWorker(worker);
+                    if (newWorker != null) idleWorkers.add(newWorker);
+                }
+            }
+        } finally {
+            // Failed workers are stopped before their replacement, hence the slot can't be written to anymore
+            if (slot >= 0) ring.release(slot);
+        }
+
+        System.err.println("Evaluation of Genome " + genome.getId() + " failed");
+        return penaltyFitness;
+    }
+
+    /**
+     * Stops all worker processes, and deletes the shared memory ring
+     */
+    @Override
+    public void close() {
+        synchronized (workers) {
+            workers.forEach(WorkerProcess::destroy);
+            workers.clear();
+        }
+        idleWorkers.clear();
+        if (ring != null) ring.close();
+    }
+}
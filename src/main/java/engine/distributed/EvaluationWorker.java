@@ -0,0 +1,108 @@
+package engine.distributed;
+
+import encoding.Genome;
+import encoding.GenomeCodec;
+import engine.EvaluationFunction;
+
+import java.io.*;
+import java.nio.file.Path;
+
+/**
+ * Entry point of a worker JVM, started by a WorkerProcess. Loads the fitness function from its reference, then reads
+ * evaluation requests from the standard input and writes the results to the standard output, until the input is
+ * closed. A heartbeat is written at a fixed interval, from a separate thread, to let the coordinator detect a hung or
+ * crashed worker.
+ *
+ * Arguments: the function reference ("package.Class::method") and the heartbeat interval in milliseconds, optionally
+ * followed by the path, slot count and slot size of the coordinator's shared memory ring. Genomes are received either
+ * inline, encoded by GenomeCodec, or as the index of the ring slot holding them; in the latter case the fitness is
+ * written back to the slot and only the request id is sent back.
+ *
+ * Anything the fitness function prints to the standard output is redirected to the standard error, which is shared
+ * with the coordinator.
+ *
+ * @author Acemad
+ */
+public class EvaluationWorker {
+
+    // Message types of the protocol between coordinator and workers
+    static final byte EVALUATE = 1;
+    static final byte RESULT = 2;
+    static final byte HEARTBEAT = 3;
+    static final byte EVALUATE_SHARED = 4;
+    static final byte SHARED_RESULT = 5;
+
+    public static void main(String[] args) throws IOException {
+
+        EvaluationFunction evaluationFunction = FunctionReference.resolve(args[0]);
+        long heartbeatInterval = Long.parseLong(args[1]);
+        SharedMemoryRing ring = args.length > 2 ?
+                new SharedMemoryRing(Path.of(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4])) : null;
+
+        // Keep the standard output for the protocol only
+        DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(System.in));
+
+        Thread heartbeat = new Thread(() -> {
+            try {
+                while (true) {
+                    synchronized (output) {
+                        output.writeByte(HEARTBEAT);
+                        output.flush();
+                    }
+                    Thread.sleep(heartbeatInterval);
+                }
+            } catch (Exception exception) {
+                // The coordinator is gone
+                System.exit(1);
+            }
+        }, "worker-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+
+        while (true) {
+            byte type;
+            try {
+                type = input.readByte();
+            } catch (EOFException exception) {
+                return; // Input closed by the coordinator
+            }
+            if (type != EVALUATE && (type != EVALUATE_SHARED || ring == null))
+                throw new IOException("Unexpected message type: " + type);
+
+            long requestId = input.readLong();
+            int slot = -1;
+            byte[] genomeBytes = null;
+            if (type == EVALUATE_SHARED)
+                slot = input.readInt();
+            else {
+                genomeBytes = new byte[input.readInt()];
+                input.readFully(genomeBytes);
+            }
+
+            double fitness;
+            try {
+                Genome genome = slot >= 0 ? ring.readGenome(slot, requestId) : GenomeCodec.decode(genomeBytes);
+                fitness = evaluationFunction.evaluate(genome);
+            } catch (Exception exception) {
+                exception.printStackTrace();
+                fitness = 0;
+            }
+
+            synchronized (output) {
+                if (slot >= 0) {
+                    ring.writeFitness(slot, requestId, fitness);
+                    output.writeByte(SHARED_RESULT);
+                    output.writeLong(requestId);
+                } else {
+                    output.writeByte(RESULT);
+                    output.writeLong(requestId);
+                    output.writeDouble(fitness);
+                }
+                output.flush();
+            }
+        }
+    }
+}
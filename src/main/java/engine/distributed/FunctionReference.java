@@ -0,0 +1,51 @@
+package engine.distributed;
+
+import encoding.Genome;
+import engine.EvaluationFunction;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Resolves a textual reference to a static fitness method, of the form "package.Class::method", into an
+ * EvaluationFunction. The method must be static, take a single Genome and return a double, e.g.
+ * "examples.XORExample::evalXOR". References allow worker processes to load the fitness function by themselves.
+ *
+ * @author Acemad
+ */
+public class FunctionReference {
+
+    /**
+     * Resolves the given reference into an EvaluationFunction
+     * @param reference A reference of the form "package.Class::method"
+     * @return An EvaluationFunction calling the referenced method
+     */
+    public static EvaluationFunction resolve(String reference) {
+
+        String[] parts = reference.split("::");
+        if (parts.length != 2)
+            throw new IllegalArgumentException("Invalid function reference, expected Class::method: " + reference);
+
+        Method method;
+        try {
+            method = Class.forName(parts[0]).getMethod(parts[1], Genome.class);
+        } catch (ClassNotFoundException | NoSuchMethodException exception) {
+            throw new IllegalArgumentException("Cannot resolve function reference: " + reference, exception);
+        }
+        if (!Modifier.isStatic(method.getModifiers()) || method.getReturnType() != double.class)
+            throw new IllegalArgumentException("Referenced method must be static and return a double: " + reference);
+
+        return genome -> {
+            try {
+                return (double) method.invoke(null, genome);
+            } catch (InvocationTargetException exception) {
+                if (exception.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) exception.getCause();
+                throw new RuntimeException(exception.getCause());
+            } catch (IllegalAccessException exception) {
+                throw new RuntimeException(exception);
+            }
+        };
+    }
+}
@@ -0,0 +1,210 @@
+package engine.distributed;
+
+import encoding.Genome;
+import encoding.GenomeCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A ring of fixed size slots in a memory mapped file, shared between the coordinator and its worker processes. The
+ * coordinator writes the binary encoding of a Genome (see GenomeCodec) into a free slot, and the worker writes the
+ * fitness back into the same slot, hence genomes and results are never copied through the standard streams, which only
+ * carry the slot index. Each request is stamped with a sequence number, checked on both sides, so a slot reused by a
+ * new request is never mistaken for an old one.
+ *
+ * The file is created in /dev/shm when available (memory backed on Linux), in the temporary directory otherwise.
+ *
+ * Slot layout: sequence (long), length of the encoding (int), padding (int), fitness (double), encoded Genome.
+ *
+ * @author Acemad
+ */
+class SharedMemoryRing implements AutoCloseable {
+
+    private static final int SEQUENCE = 0;
+    private static final int LENGTH = 8;
+    private static final int FITNESS = 16;
+    private static final int HEADER_SIZE = 24;
+
+    private final Path file;
+    private final int slotCount;
+    private final int slotSize;
+    private final MappedByteBuffer buffer;
+    private final boolean owner;                // Whether this side created the file, and deletes it when closed
+
+    private BlockingQueue<Integer> freeSlots;   // Coordinator side only
+
+    /**
+     * Creates and maps a new ring file, on the coordinator side
+     *
+     * @param slotCount The number of slots
+     * @param slotSize The size of a slot in bytes, header included
+     * @throws IOException If the file cannot be created or mapped
+     */
+    SharedMemoryRing(int slotCount, int slotSize) throws IOException {
+        this(createFile(), slotCount, slotSize, true);
+        freeSlots = new ArrayBlockingQueue<>(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) freeSlots.add(slot);
+    }
+
+    /**
+     * Maps an existing ring file, on the worker side
+     *
+     * @param file The ring file created by the coordinator
+     * @param slotCount The number of slots
+     * @param slotSize The size of a slot in bytes, header included
+     * @throws IOException If the file cannot be mapped
+     */
+    SharedMemoryRing(Path file, int slotCount, int slotSize) throws IOException {
+        this(file, slotCount, slotSize, false);
+    }
+
+    private SharedMemoryRing(Path file, int slotCount, int slotSize, boolean owner) throws IOException {
+        if (slotSize <= HEADER_SIZE)
+            throw new IllegalArgumentException("Shared memory slots must be larger than " + HEADER_SIZE + " bytes");
+
+        this.file = file;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+        this.owner = owner;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * slotSize);
+        }
+    }
+
+    private static Path createFile() throws IOException {
+        Path sharedMemory = Path.of("/dev/shm");
+        Path file = Files.isDirectory(sharedMemory) && Files.isWritable(sharedMemory) ?
+                Files.createTempFile(sharedMemory, "aneat-ring-", ".bin") :
+                Files.createTempFile("aneat-ring-", ".bin");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Returns a view of the given slot. Views are independent, hence slots can be accessed concurrently
+     */
+    private ByteBuffer slot(int slot) {
+        return buffer.slice(slot * slotSize, slotSize);
+    }
+
+    /**
+     * Takes a free slot, waiting until one is released if necessary
+     *
+     * @return The index of the slot
+     * @throws InterruptedException If interrupted while waiting
+     */
+    int acquire() throws InterruptedException {
+        return freeSlots.take();
+    }
+
+    /**
+     * Gives back a slot taken by acquire()
+     *
+     * @param slot The index of the slot
+     */
+    void release(int slot) {
+        freeSlots.add(slot);
+    }
+
+    /**
+     * Writes the encoding of the Genome to the slot, stamped with the given sequence number
+     *
+     * @param slot The index of the slot
+     * @param sequence The sequence number of the request
+     * @param genome The Genome to write
+     * @return False if the Genome doesn't fit in a slot, in which case nothing is written
+     */
+    boolean writeGenome(int slot, long sequence, Genome genome) {
+        int length = GenomeCodec.encodedSize(genome);
+        if (length > slotSize - HEADER_SIZE) return false;
+
+        ByteBuffer view = slot(slot);
+        GenomeCodec.encode(genome, view.position(HEADER_SIZE));
+        view.putInt(LENGTH, length);
+        view.putDouble(FITNESS, 0);
+        view.putLong(SEQUENCE, sequence);
+        return true;
+    }
+
+    /**
+     * Reads the Genome of a request from the slot
+     *
+     * @param slot The index of the slot
+     * @param sequence The sequence number of the request
+     * @return The decoded Genome
+     * @throws IllegalStateException If the slot doesn't hold the given request
+     */
+    Genome readGenome(int slot, long sequence) {
+        ByteBuffer view = slot(slot);
+        checkSequence(view, slot, sequence);
+        return GenomeCodec.decode(view.position(HEADER_SIZE).limit(HEADER_SIZE + view.getInt(LENGTH)));
+    }
+
+    /**
+     * Writes the fitness resulting from a request to its slot
+     *
+     * @param slot The index of the slot
+     * @param sequence The sequence number of the request
+     * @param fitness The fitness of the Genome
+     * @throws IllegalStateException If the slot doesn't hold the given request anymore
+     */
+    void writeFitness(int slot, long sequence, double fitness) {
+        ByteBuffer view = slot(slot);
+        checkSequence(view, slot, sequence);
+        view.putDouble(FITNESS, fitness);
+    }
+
+    /**
+     * Reads the fitness written by the worker to the slot
+     *
+     * @param slot The index of the slot
+     * @param sequence The sequence number of the request
+     * @return The fitness of the Genome
+     * @throws IllegalStateException If the slot doesn't hold the given request
+     */
+    double readFitness(int slot, long sequence) {
+        ByteBuffer view = slot(slot);
+        checkSequence(view, slot, sequence);
+        return view.getDouble(FITNESS);
+    }
+
+    private void checkSequence(ByteBuffer view, int slot, long sequence) {
+        long found = view.getLong(SEQUENCE);
+        if (found != sequence)
+            throw new IllegalStateException("Slot " + slot + " holds request " + found + " instead of " + sequence);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Deletes the ring file if this side created it. The mapping itself is released with the buffer
+     */
+    @Override
+    public void close() {
+        if (!owner) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package engine.distributed;
+
+import engine.EvaluationContext;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The coordinator side of a worker JVM: starts the process, sends it evaluation requests through its standard input,
+ * and reads results and heartbeats from its standard output on a dedicated thread. A worker evaluates one Genome at a
+ * time. When a shared memory ring is given, requests and results are passed through its slots, and the standard
+ * streams only carry the slot index and the sequence number of the request.
+ *
+ * @author Acemad
+ */
+class WorkerProcess {
+
+    /**
+     * Thrown when a worker crashes, stops sending heartbeats, or its evaluation is cancelled
+     */
+    static class WorkerFailure extends Exception {
+        WorkerFailure(String message) {
+            super(message);
+        }
+    }
+
+    private final Process process;
+    private final DataOutputStream output;
+    private final long heartbeatTimeout;
+    private final SharedMemoryRing ring;
+
+    // Guarded by this: the id of the request in progress, its slot (-1 if sent inline), and its result once received
+    private long requestId = 0;
+    private int requestSlot = -1;
+    private boolean resultReceived;
+    private double result;
+
+    private volatile long lastHeartbeat;
+    private volatile boolean alive = true;
+
+    /**
+     * Starts a worker JVM using the classpath of the current JVM
+     *
+     * @param functionReference The reference of the fitness function, "package.Class::method"
+     * @param jvmOptions Additional options of the worker JVM, separated by spaces
+     * @param heartbeatInterval The interval between two heartbeats of the worker, in milliseconds
+     * @param heartbeatTimeout The delay without heartbeat after which the worker is considered dead, in milliseconds
+     * @param ring The shared memory ring used for passing genomes and results, null to use the standard streams only
+     * @throws IOException If the process cannot be started
+     */
+    WorkerProcess(String functionReference, String jvmOptions, long heartbeatInterval, long heartbeatTimeout,
+                  SharedMemoryRing ring) throws IOException {
+
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.ring = ring;
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : jvmOptions.trim().split("\\s+"))
+            if (!option.isEmpty()) command.add(option);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(EvaluationWorker.class.getName());
+        command.add(functionReference);
+        command.add(String.valueOf(heartbeatInterval));
+        if (ring != null) {
+            command.add(ring.getFile().toString());
+            command.add(String.valueOf(ring.getSlotCount()));
+            command.add(String.valueOf(ring.getSlotSize()));
+        }
+
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        lastHeartbeat = System.currentTimeMillis();
+
+        Thread reader = new Thread(this::read, "worker-reader-" + process.pid());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * The loop run by the reader thread: records heartbeats and results until the worker's output is closed
+     */
+    private void read() {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+            while (true) {
+                byte type = input.readByte();
+                lastHeartbeat = System.currentTimeMillis();
+                if (type == EvaluationWorker.RESULT) {
+                    long id = input.readLong();
+                    double fitness = input.readDouble();
+                    synchronized (this) {
+                        if (id == requestId) {
+                            result = fitness;
+                            resultReceived = true;
+                            notifyAll();
+                        }
+                    }
+                } else if (type == EvaluationWorker.SHARED_RESULT) {
+                    long id = input.readLong();
+                    synchronized (this) {
+                        if (id == requestId) {
+                            result = ring.readFitness(requestSlot, id);
+                            resultReceived = true;
+                            notifyAll();
+                        }
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            // The worker exited or crashed
+        } finally {
+            alive = false;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Sends an encoded Genome to the worker through its standard input and waits for its fitness
+     *
+     * @param id The unique id of the request
+     * @param genomeBytes The Genome, encoded by GenomeCodec
+     * @param context The context of the evaluation, checked while waiting
+     * @return The fitness of the Genome
+     * @throws WorkerFailure If the worker dies, stops sending heartbeats, or the evaluation is cancelled
+     */
+    double evaluate(long id, byte[] genomeBytes, EvaluationContext context) throws WorkerFailure {
+
+        synchronized (this) {
+            requestId = id;
+            requestSlot = -1;
+            resultReceived = false;
+        }
+
+        try {
+            output.writeByte(EvaluationWorker.EVALUATE);
+            output.writeLong(id);
+            output.writeInt(genomeBytes.length);
+            output.write(genomeBytes);
+            output.flush();
+        } catch (IOException exception) {
+            throw new WorkerFailure("Worker " + process.pid() + " cannot receive requests: " + exception.getMessage());
+        }
+
+        return awaitResult(context);
+    }
+
+    /**
+     * Asks the worker to evaluate the Genome written to a slot of the shared memory ring, and waits for its fitness,
+     * which the worker writes to the same slot
+     *
+     * @param id The sequence number the slot was stamped with
+     * @param slot The index of the slot
+     * @param context The context of the evaluation, checked while waiting
+     * @return The fitness of the Genome
+     * @throws WorkerFailure If the worker dies, stops sending heartbeats, or the evaluation is cancelled
+     */
+    double evaluate(long id, int slot, EvaluationContext context) throws WorkerFailure {
+
+        synchronized (this) {
+            requestId = id;
+            requestSlot = slot;
+            resultReceived = false;
+        }
+
+        try {
+            output.writeByte(EvaluationWorker.EVALUATE_SHARED);
+            output.writeLong(id);
+            output.writeInt(slot);
+            output.flush();
+        } catch (IOException exception) {
+            throw new WorkerFailure("Worker " + process.pid() + " cannot receive requests: " + exception.getMessage());
+        }
+
+        return awaitResult(context);
+    }
+
+    /**
+     * Waits for the result of the request in progress
+     */
+    private synchronized double awaitResult(EvaluationContext context) throws WorkerFailure {
+        while (!resultReceived) {
+            if (!alive)
+                throw new WorkerFailure("Worker " + process.pid() + " exited");
+            if (System.currentTimeMillis() - lastHeartbeat > heartbeatTimeout)
+                throw new WorkerFailure("Worker " + process.pid() + " stopped sending heartbeats");
+            if (context.isCancelled())
+                throw new WorkerFailure("Evaluation cancelled on worker " + process.pid());
+            try {
+                wait(Math.min(100, heartbeatTimeout));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new WorkerFailure("Evaluation interrupted on worker " + process.pid());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the worker: closes its input, which ends it normally, and kills it if it's still running. Waits briefly
+     * for the process to end, so it cannot write to a shared memory slot once the slot is reused.
+     */
+    void destroy() {
+        try {
+            output.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            process.destroyForcibly().waitFor(1, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -24,6 +24,10 @@ public class Counter {
         this.value--;
     }
 
+    public void add(int amount) {
+        this.value += amount;
+    }
+
     public int get() {
         return value;
     }
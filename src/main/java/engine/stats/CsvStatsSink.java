@@ -0,0 +1,144 @@
+package engine.stats;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the statistics of a run to two CSV files as it goes: one row per generation, and one row per species and
+ * generation. Rows go through a buffered writer flushed at each generation, hence the files can be followed while the
+ * run is going, and a crash loses at most the generation being written. A resumed run runs again the generations
+ * following its checkpoint: their rows, and any row cut short by the crash, are dropped before appending.
+ *
+ * @author Acemad
+ */
+public class CsvStatsSink implements StatsSink {
+
+    private final Path generationsFile;
+    private final Path speciesFile;
+    private final boolean append;
+    private CSVPrinter generationsPrinter;                  // Opened on the first row
+    private CSVPrinter speciesPrinter;
+
+    /**
+     * Creates a sink writing to the given files
+     *
+     * @param generationsFile The file receiving one row per generation
+     * @param speciesFile The file receiving one row per species and generation
+     * @param append Whether to append to existing files, when resuming a run, rather than replace them
+     */
+    public CsvStatsSink(String generationsFile, String speciesFile, boolean append) {
+        this.generationsFile = Path.of(generationsFile);
+        this.speciesFile = Path.of(speciesFile);
+        this.append = append;
+    }
+
+    @Override
+    public void writeGeneration(Map<String, Double> generation, List<Map<String, Double>> species) throws IOException {
+
+        // The first generation written by a resumed run, and those after it, might already have rows
+        if (append && generationsPrinter == null) {
+            double firstGeneration = generation.get("generation");
+            truncateFrom(generationsFile, firstGeneration);
+            truncateFrom(speciesFile, firstGeneration);
+        }
+
+        if (generationsPrinter == null) generationsPrinter = open(generationsFile, generation);
+        printRow(generationsPrinter, generation);
+        for (Map<String, Double> row : species) {
+            if (speciesPrinter == null) speciesPrinter = open(speciesFile, row);
+            printRow(speciesPrinter, row);
+        }
+
+        generationsPrinter.flush();
+        if (speciesPrinter != null) speciesPrinter.flush();
+    }
+
+    /**
+     * Opens a CSV file, and writes the header from the columns of the given row unless appending to a non-empty file
+     */
+    private CSVPrinter open(Path file, Map<String, Double> row) throws IOException {
+        boolean header = !append || Files.notExists(file) || Files.size(file) == 0;
+        CSVPrinter printer = new CSVPrinter(Files.newBufferedWriter(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING),
+                CSVFormat.EXCEL);
+        if (header) printer.printRecord(row.keySet());
+        return printer;
+    }
+
+    /**
+     * Truncates a CSV file before its first row of the given generation or later, rows being in increasing order of
+     * generation, or before its last row if cut short
+     *
+     * @param file The CSV file, with a header including a "generation" column
+     * @param generation The first generation to drop
+     * @throws IOException If the file cannot be read or truncated
+     */
+    private static void truncateFrom(Path file, double generation) throws IOException {
+
+        if (Files.notExists(file)) return;
+
+        long keep = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            int column = -1;
+            long position = 0;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int next = in.read(); next >= 0; next = in.read()) {
+                position++;
+                if (next != '\n') {
+                    line.write(next);
+                    continue;
+                }
+                String[] fields = line.toString(StandardCharsets.US_ASCII).trim().split(",");
+                line.reset();
+                if (column < 0) {
+                    column = List.of(fields).indexOf("generation");
+                    if (column < 0) return;                // Not a statistics file, left untouched
+                } else if (column >= fields.length || Double.parseDouble(fields[column]) >= generation) {
+                    break;
+                }
+                keep = position;
+            }
+        } catch (NumberFormatException exception) {
+            // A row cut short, dropped with the rest
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(keep);
+        }
+    }
+
+    /**
+     * Prints the values of a row, whole numbers (ids, counts) without decimals
+     */
+    private static void printRow(CSVPrinter printer, Map<String, Double> row) throws IOException {
+        List<Object> values = new ArrayList<>(row.size());
+        for (double value : row.values()) {
+            if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15)
+                values.add((long) value);
+            else
+                values.add(value);
+        }
+        printer.printRecord(values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (generationsPrinter != null) generationsPrinter.close();
+        if (speciesPrinter != null) speciesPrinter.close();
+        generationsPrinter = null;
+        speciesPrinter = null;
+    }
+}
@@ -0,0 +1,104 @@
+package engine.stats;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * A bounded-memory summary of a distribution of values: count, min, max, mean and variance computed exactly in a
+ * single pass, and quantiles estimated by a QuantileSketch. Unlike DescriptiveStatistics, the values themselves are
+ * not kept. Summaries are mergeable, the summary of a set of generations being the merge of their summaries.
+ *
+ * @author Acemad
+ */
+public class DistributionSummary implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private long n = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double mean = 0;
+    private double sumOfSquaredDeviations = 0;      // Welford's M2
+    private final QuantileSketch sketch;
+
+    /**
+     * Creates an empty summary
+     * @param sketchCapacity The capacity of the quantile sketch, see QuantileSketch
+     */
+    public DistributionSummary(int sketchCapacity) {
+        this.sketch = new QuantileSketch(sketchCapacity);
+    }
+
+    /**
+     * Adds a value to the summary
+     * @param value The value to add
+     */
+    public void addValue(double value) {
+        n++;
+        min = n == 1 ? value : Math.min(min, value);
+        max = n == 1 ? value : Math.max(max, value);
+        double deviation = value - mean;
+        mean += deviation / n;
+        sumOfSquaredDeviations += deviation * (value - mean);
+        sketch.addValue(value);
+    }
+
+    /**
+     * Merges another summary into this one. The other summary is left unchanged
+     * @param other The summary to merge
+     */
+    public void merge(DistributionSummary other) {
+        if (other.n == 0) return;
+        if (n == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        // Parallel variance update (Chan et al.)
+        long total = n + other.n;
+        double deviation = other.mean - mean;
+        sumOfSquaredDeviations += other.sumOfSquaredDeviations + deviation * deviation * n * other.n / total;
+        mean += deviation * other.n / total;
+        n = total;
+        sketch.merge(other.sketch);
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return n > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the sample variance, as DescriptiveStatistics.getVariance
+     */
+    public double getVariance() {
+        return n > 1 ? sumOfSquaredDeviations / (n - 1) : n == 1 ? 0 : Double.NaN;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Estimates a percentile of the values, as DescriptiveStatistics.getPercentile
+     * @param percentile The percentile, between 0 and 100
+     * @return The estimated value
+     */
+    public double getPercentile(double percentile) {
+        return sketch.getQuantile(percentile / 100);
+    }
+}
@@ -0,0 +1,138 @@
+package engine.stats;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch, estimating the quantiles of a stream of values in bounded memory. Values are kept in
+ * levels of at most capacity values, a value of level i standing for 2^i original values. Once a level is full, it's
+ * sorted and every other value is promoted to the next level, the rest being dropped. Sketches of separate streams
+ * merge by concatenating their levels and compacting again, hence the summary of a whole run can be obtained from the
+ * summaries of its generations.
+ *
+ * Unlike the randomized compaction of KLL sketches, which value of a pair is kept alternates deterministically at each
+ * compaction of a level, so the sketch doesn't draw from the PRNG and leaves the course of evolution unchanged. The
+ * rank error is in the order of levels / capacity.
+ *
+ * @author Acemad
+ */
+public class QuantileSketch implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+    private boolean[] parities = new boolean[0];    // Which value of each pair the next compaction of a level keeps
+    private long count = 0;
+
+    /**
+     * Creates an empty sketch
+     * @param capacity The maximum number of values per level, larger is more accurate
+     */
+    public QuantileSketch(int capacity) {
+        this.capacity = Math.max(2, capacity);
+    }
+
+    /**
+     * Adds a value to the sketch
+     * @param value The value to add
+     */
+    public void addValue(double value) {
+        append(0, value);
+        count++;
+        compact();
+    }
+
+    /**
+     * Merges another sketch into this one. The other sketch is left unchanged
+     * @param other The sketch to merge
+     */
+    public void merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.length; level++)
+            for (int i = 0; i < other.sizes[level]; i++)
+                append(level, other.levels[level][i]);
+        count += other.count;
+        compact();
+    }
+
+    /**
+     * Estimates the value at the given quantile
+     *
+     * @param quantile The quantile, between 0 and 1
+     * @return The estimated value, NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+
+        int total = 0;
+        for (int size : sizes) total += size;
+        if (total == 0) return Double.NaN;
+
+        // Sort the retained values along their weights, then walk up to the requested rank
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        Integer[] order = new Integer[total];
+        long totalWeight = 0;
+        for (int level = 0, i = 0; level < levels.length; level++)
+            for (int j = 0; j < sizes[level]; j++, i++) {
+                values[i] = levels[level][j];
+                weights[i] = 1L << level;
+                order[i] = i;
+                totalWeight += weights[i];
+            }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double rank = quantile * totalWeight;
+        long cumulativeWeight = 0;
+        for (int i : order) {
+            cumulativeWeight += weights[i];
+            if (cumulativeWeight >= rank) return values[i];
+        }
+        return values[order[total - 1]];
+    }
+
+    /**
+     * Returns the number of values added to the sketch, including those of merged sketches
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            int previousLength = levels.length;
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            parities = Arrays.copyOf(parities, level + 1);
+            for (int newLevel = previousLength; newLevel <= level; newLevel++)
+                levels[newLevel] = new double[capacity];
+        }
+        if (sizes[level] == levels[level].length)
+            levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compacts full levels, from the lowest up, until no level holds more than capacity values
+     */
+    private void compact() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] < capacity) continue;
+
+            double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+            // An odd value out stays at this level
+            int paired = size & ~1;
+            for (int i = parities[level] ? 1 : 0; i < paired; i += 2)
+                append(level + 1, values[i]);
+            parities[level] = !parities[level];
+
+            if (paired < size) values[0] = values[size - 1];
+            sizes[level] = size - paired;
+            if (values.length > capacity) levels[level] = Arrays.copyOf(values, capacity);
+        }
+    }
+}
@@ -83,4 +83,28 @@ public class ReproductionStats {
     public Counter reOrientLinkMutations() {
         return reOrientLinkMutations;
     }
+
+    /**
+     * Adds the counts of the given stats to these stats, e.g. those of an offspring spawned on another thread
+     * @param other The stats to add
+     */
+    public void add(ReproductionStats other) {
+        mutationOnlyReproductions.add(other.mutationOnlyReproductions.get());
+        mutations.add(other.mutations.get());
+        matingOnlyReproductions.add(other.matingOnlyReproductions.get());
+        matings.add(other.matings.get());
+        matingPlusMutationReproductions.add(other.matingPlusMutationReproductions.get());
+        totalReproductions.add(other.totalReproductions.get());
+
+        addNodeMutations.add(other.addNodeMutations.get());
+        addLinkMutations.add(other.addLinkMutations.get());
+        weightMutations.add(other.weightMutations.get());
+        toggleEnableMutations.add(other.toggleEnableMutations.get());
+        reEnableMutations.add(other.reEnableMutations.get());
+        activationMutations.add(other.activationMutations.get());
+
+        deleteLinkMutations.add(other.deleteLinkMutations.get());
+        deleteNodeMutations.add(other.deleteNodeMutations.get());
+        reOrientLinkMutations.add(other.reOrientLinkMutations.get());
+    }
 }
@@ -0,0 +1,148 @@
+package engine.stats;
+
+import util.BinaryOutput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A columnar store of statistics on disk: each column is a separate file of raw doubles (big-endian), one per row,
+ * named after a common prefix and the name of the column. A column can be read back alone, without parsing the others,
+ * and rows can be appended to existing files, so a resumed run continues the columns of the original run. The rows of
+ * the generations the resumed run goes through again, and values left over by a crash, are dropped first.
+ *
+ * As a StatsSink, each value of a generation row goes to the column of the same name, and each value of a species row
+ * to the column of the same name prefixed with "species.". The compact alternative to CsvStatsSink for large sweeps.
+ *
+ * @author Acemad
+ */
+public class StatsColumns implements StatsSink {
+
+    private final String prefix;
+    private final boolean append;
+    private final Map<String, BinaryOutput> columns = new LinkedHashMap<>();
+
+    /**
+     * Creates a store whose column files are named prefix + column name
+     * @param prefix The prefix of the column files, including their directory
+     * @param append Whether to append to existing column files, when resuming a run, rather than replace them
+     */
+    public StatsColumns(String prefix, boolean append) {
+        this.prefix = prefix;
+        this.append = append;
+    }
+
+    /**
+     * Appends a value to the given column, opened on first use
+     *
+     * @param column The name of the column
+     * @param value The value to append
+     * @throws IOException If the column file cannot be opened
+     */
+    public void append(String column, double value) throws IOException {
+        BinaryOutput out = columns.get(column);
+        if (out == null) {
+            out = append ? BinaryOutput.appendToFile(columnFile(prefix, column)) :
+                    BinaryOutput.toFile(columnFile(prefix, column));
+            columns.put(column, out);
+        }
+        out.putDouble(value);
+    }
+
+    @Override
+    public void writeGeneration(Map<String, Double> generation, List<Map<String, Double>> species) throws IOException {
+        // The first generation written by a resumed run, and those after it, might already have rows
+        if (append && columns.isEmpty()) truncateFrom(generation.get("generation"));
+        for (Map.Entry<String, Double> entry : generation.entrySet()) append(entry.getKey(), entry.getValue());
+        for (Map<String, Double> row : species)
+            for (Map.Entry<String, Double> entry : row.entrySet()) append("species." + entry.getKey(), entry.getValue());
+        flush();
+    }
+
+    /**
+     * Drops the rows of the given generation and later from the column files, generation rows and species rows being
+     * found through the "generation" and "species.generation" columns. Columns longer than the others, cut short
+     * while a row was written, are cut to the same length.
+     *
+     * @param generation The first generation to drop
+     * @throws IOException If the files cannot be read or truncated
+     */
+    private void truncateFrom(double generation) throws IOException {
+
+        Path directory = Path.of(prefix).toAbsolutePath().getParent();
+        String filePrefix = Path.of(prefix).getFileName().toString();
+        List<Path> generationColumns = new ArrayList<>();
+        List<Path> speciesColumns = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(filePrefix + "species.")) speciesColumns.add(file);
+                else if (name.startsWith(filePrefix)) generationColumns.add(file);
+            });
+        }
+
+        truncateRows(generationColumns, columnFile(prefix, "generation"), generation);
+        truncateRows(speciesColumns, columnFile(prefix, "species.generation"), generation);
+    }
+
+    /**
+     * Truncates columns of the same rows before the first row of the given generation or later
+     */
+    private static void truncateRows(List<Path> files, Path generationColumn, double generation) throws IOException {
+
+        long rows = Long.MAX_VALUE;
+        for (Path file : files) rows = Math.min(rows, Files.size(file) / Double.BYTES);
+        if (files.isEmpty() || Files.notExists(generationColumn)) return;
+
+        ByteBuffer generations = ByteBuffer.wrap(Files.readAllBytes(generationColumn));
+        long keep = 0;
+        while (keep < rows && generations.getDouble((int) keep * Double.BYTES) < generation) keep++;
+
+        for (Path file : files)
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(keep * Double.BYTES);
+            }
+    }
+
+    /**
+     * Writes the appended values to the column files
+     * @throws IOException If writing fails
+     */
+    public void flush() throws IOException {
+        for (BinaryOutput out : columns.values()) out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BinaryOutput out : columns.values()) out.close();
+        columns.clear();
+    }
+
+    /**
+     * Reads a whole column of a store
+     *
+     * @param prefix The prefix of the column files of the store
+     * @param column The name of the column
+     * @return The values of the column, one per row
+     * @throws IOException If the column file cannot be read
+     */
+    public static double[] read(String prefix, String column) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(columnFile(prefix, column)));
+        double[] values = new double[buffer.remaining() / Double.BYTES];
+        buffer.asDoubleBuffer().get(values);
+        return values;
+    }
+
+    private static Path columnFile(String prefix, String column) {
+        return Path.of(prefix + column);
+    }
+}
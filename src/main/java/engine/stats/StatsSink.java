@@ -0,0 +1,25 @@
+package engine.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A destination of the statistics of a run, receiving the summary of each generation as soon as it's recorded (see
+ * EvolutionStats.addSink). Rows map column names to values, the columns of all generation rows (resp. species rows)
+ * being the same, in the same order.
+ *
+ * @author Acemad
+ */
+public interface StatsSink extends Closeable {
+
+    /**
+     * Writes the summary of a generation. The row is expected to reach the destination before the method returns
+     *
+     * @param generation The generation row: fitness, topology, species and reproduction values of the generation
+     * @param species One row per species present in the generation
+     * @throws IOException If writing fails
+     */
+    void writeGeneration(Map<String, Double> generation, List<Map<String, Double>> species) throws IOException;
+}
@@ -2,8 +2,7 @@ package examples;
 
 import encoding.Genome;
 import encoding.phenotype.NeuralNetwork;
-import engine.ANEAT;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import engine.ExperimentRunner;
 
 /**
  * An example use case of ANEAT for the XOR problem.
@@ -23,28 +22,31 @@ public class XORExample {
         String baseName = parentDir + experiment; //Prefix for population, best genome, and statistics files
 
         int runs = 10; // Number of runs
-        int generations = 500; // Number of generations in each run
-
-        for (int i = 0; i < runs; i++) {
-
-            // Start a fresh new run
-            ANEAT aneat = new ANEAT(configPath);
-            // Normal run, without saving
-            aneat.run(XORExample::evalXOR, generations, null);
-
-            /* Resuming from a previous run */
-            // int generation = 1000; // Generation to resume from (must have been saved previously)
-            // ANEAT aneat = new ANEAT(configPath,
-            //                         baseName + "Pop-" + generation,    // Previous population file
-            //                         baseName + "Stats"); // Previous stats file (null: create new stats)
-
-            /* Saving evolution files for resuming evolution later */
-            // To save the last three generations, last three best genomes, and statistic files, include the base name
-            // parameter
-            // aneat.run(XORExample::evalXOR, generations, baseName);
-
-            System.out.println("\tBestGenome ->\n\t" + aneat.getBestGenome().toConciseString());
-        }
+        int generations = 500; // Maximum number of generations in each run, a run stops once targetFitness is reached
+
+        // Independent runs executed concurrently (see experimentThreads), each with its own random stream, one report
+        // row per run. Set a seed to reproduce an experiment
+        ExperimentRunner runner = new ExperimentRunner(configPath, runs);
+        // Normal runs, without saving
+        runner.run(XORExample::evalXOR, generations, baseName + "Runs.csv", null);
+
+        /* Comparing configurations: runs are repeated for each combination of the given parameter values */
+        // new ExperimentRunner(configPath, runs)
+        //         .addParameter("populationSize", 150, 300)
+        //         .addParameter("mutateAddNodeProbability", 0.01, 0.03)
+        //         .setSeed(42)
+        //         .run(XORExample::evalXOR, generations, baseName + "Grid.csv", null);
+
+        /* Resuming from a previous run */
+        // int generation = 1000; // Generation to resume from (must have been saved previously)
+        // ANEAT aneat = new ANEAT(configPath,
+        //                         baseName + "Pop-" + generation,    // Previous population file
+        //                         baseName + "Stats"); // Previous stats file (null: create new stats)
+
+        /* Saving evolution files for resuming evolution later */
+        // To save the last populations, the hall of fame and statistic files of each run, include the base name
+        // parameter, run i saving under baseName + "Run" + i
+        // runner.run(XORExample::evalXOR, generations, baseName + "Runs.csv", baseName);
     }
 
     /**
@@ -1,8 +1,11 @@
 package innovation;
 
 import activations.ActivationType;
+import util.BinaryInput;
+import util.BinaryOutput;
 import util.Link;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
@@ -11,6 +14,9 @@ import java.util.*;
  * prevent the duplication of the same structural innovation through multiple different ids. Also keeps track of the
  * number of Genomes and Species.
  *
+ * Requests for new ids are synchronized, which allows a single innovation database to be shared by populations
+ * evolving concurrently (e.g. islands), keeping the same innovation ids for the same structures across populations.
+ *
  * @author Acemad
  */
 public class InnovationDB implements Serializable {
@@ -71,6 +77,172 @@ public class InnovationDB implements Serializable {
         speciesCount = 0;
     }
 
+    /**
+     * Creates an empty innovation database, to be filled by readFrom
+     */
+    private InnovationDB(int biasNodeId, ActivationType defaultActivationType, double weightRangeMin,
+                         double weightRangeMax) {
+        this.biasNodeId = biasNodeId;
+        this.defaultActivationType = defaultActivationType;
+        this.weightRangeMin = weightRangeMin;
+        this.weightRangeMax = weightRangeMax;
+    }
+
+    /**
+     * Writes the full state of the innovation database in binary form, the counterpart of readFrom
+     *
+     * @param out The destination
+     * @throws IOException If writing fails
+     */
+    public synchronized void writeTo(BinaryOutput out) throws IOException {
+
+        out.putVarInt(biasNodeId + 1);
+        // Activation types are stored as ordinal + 1, 0 stands for none
+        out.putByte(defaultActivationType != null ? defaultActivationType.ordinal() + 1 : 0);
+        out.putDouble(weightRangeMin);
+        out.putDouble(weightRangeMax);
+
+        out.putVarInt(nodeCount);
+        out.putVarInt(linkCount);
+        out.putVarInt(genomeCount);
+        out.putVarInt(speciesCount);
+
+        writeIds(out, inputNodeIds);
+        writeIds(out, outputNodeIds);
+        writeIds(out, hiddenNodeIds);
+
+        out.putVarInt(existingLinks.size());
+        for (Map.Entry<Link, Integer> entry : existingLinks.entrySet()) {
+            out.putVarInt(entry.getKey().getSource());
+            out.putVarInt(entry.getKey().getDestination());
+            out.putVarInt(entry.getValue());
+        }
+
+        out.putVarInt(interruptedLinks.size());
+        for (Map.Entry<Link, List<Integer>> entry : interruptedLinks.entrySet()) {
+            out.putVarInt(entry.getKey().getSource());
+            out.putVarInt(entry.getKey().getDestination());
+            writeIds(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads an innovation database written by writeTo
+     *
+     * @param in The source
+     * @return The innovation database, in the state it was written
+     * @throws IOException If reading fails
+     */
+    public static InnovationDB readFrom(BinaryInput in) throws IOException {
+
+        int biasNodeId = in.getVarInt() - 1;
+        int activation = in.getByte();
+        InnovationDB innovationDB = new InnovationDB(biasNodeId,
+                activation > 0 ? ActivationType.values()[activation - 1] : null, in.getDouble(), in.getDouble());
+
+        innovationDB.nodeCount = in.getVarInt();
+        innovationDB.linkCount = in.getVarInt();
+        innovationDB.genomeCount = in.getVarInt();
+        innovationDB.speciesCount = in.getVarInt();
+
+        innovationDB.inputNodeIds.addAll(readIds(in));
+        innovationDB.outputNodeIds.addAll(readIds(in));
+        innovationDB.hiddenNodeIds.addAll(readIds(in));
+
+        int existingLinkCount = in.getVarInt();
+        for (int i = 0; i < existingLinkCount; i++)
+            innovationDB.existingLinks.put(new Link(in.getVarInt(), in.getVarInt()), in.getVarInt());
+
+        int interruptedLinkCount = in.getVarInt();
+        for (int i = 0; i < interruptedLinkCount; i++)
+            innovationDB.interruptedLinks.put(new Link(in.getVarInt(), in.getVarInt()), readIds(in));
+
+        return innovationDB;
+    }
+
+    /**
+     * Writes the innovations found since the database had the given node and link counts, the counterpart of
+     * readDelta. Node and link ids are assigned in increasing order, hence new innovations are those with larger ids.
+     *
+     * @param out The destination
+     * @param sinceNodeCount The node count at the time of the previous write
+     * @param sinceLinkCount The link count at the time of the previous write
+     * @throws IOException If writing fails
+     */
+    public synchronized void writeDelta(BinaryOutput out, int sinceNodeCount, int sinceLinkCount) throws IOException {
+
+        out.putVarInt(nodeCount);
+        out.putVarInt(linkCount);
+        out.putVarInt(genomeCount);
+        out.putVarInt(speciesCount);
+
+        List<Integer> newHiddenNodeIds = new ArrayList<>();
+        for (int nodeId : hiddenNodeIds) if (nodeId >= sinceNodeCount) newHiddenNodeIds.add(nodeId);
+        writeIds(out, newHiddenNodeIds);
+
+        List<Map.Entry<Link, Integer>> newLinks = new ArrayList<>();
+        for (Map.Entry<Link, Integer> entry : existingLinks.entrySet())
+            if (entry.getValue() >= sinceLinkCount) newLinks.add(entry);
+        out.putVarInt(newLinks.size());
+        for (Map.Entry<Link, Integer> entry : newLinks) {
+            out.putVarInt(entry.getKey().getSource());
+            out.putVarInt(entry.getKey().getDestination());
+            out.putVarInt(entry.getValue());
+        }
+
+        // Interrupting nodes are appended to the lists, the new ones are at their end
+        Map<Link, List<Integer>> newInterruptions = new HashMap<>();
+        for (Map.Entry<Link, List<Integer>> entry : interruptedLinks.entrySet()) {
+            List<Integer> nodeIds = entry.getValue();
+            int first = nodeIds.size();
+            while (first > 0 && nodeIds.get(first - 1) >= sinceNodeCount) first--;
+            if (first < nodeIds.size()) newInterruptions.put(entry.getKey(), nodeIds.subList(first, nodeIds.size()));
+        }
+        out.putVarInt(newInterruptions.size());
+        for (Map.Entry<Link, List<Integer>> entry : newInterruptions.entrySet()) {
+            out.putVarInt(entry.getKey().getSource());
+            out.putVarInt(entry.getKey().getDestination());
+            writeIds(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Adds the innovations written by writeDelta to this database
+     *
+     * @param in The source
+     * @throws IOException If reading fails
+     */
+    public synchronized void readDelta(BinaryInput in) throws IOException {
+
+        nodeCount = in.getVarInt();
+        linkCount = in.getVarInt();
+        genomeCount = in.getVarInt();
+        speciesCount = in.getVarInt();
+
+        hiddenNodeIds.addAll(readIds(in));
+
+        int newLinkCount = in.getVarInt();
+        for (int i = 0; i < newLinkCount; i++)
+            existingLinks.put(new Link(in.getVarInt(), in.getVarInt()), in.getVarInt());
+
+        int newInterruptionCount = in.getVarInt();
+        for (int i = 0; i < newInterruptionCount; i++)
+            interruptedLinks.computeIfAbsent(new Link(in.getVarInt(), in.getVarInt()), link -> new ArrayList<>())
+                    .addAll(readIds(in));
+    }
+
+    private static void writeIds(BinaryOutput out, Collection<Integer> ids) throws IOException {
+        out.putVarInt(ids.size());
+        for (int id : ids) out.putVarInt(id);
+    }
+
+    private static List<Integer> readIds(BinaryInput in) throws IOException {
+        int count = in.getVarInt();
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(in.getVarInt());
+        return ids;
+    }
+
     /**
      * Retrieve the id of a given link (source -> destination) or create a new link id if the link does not exist
      *
@@ -78,7 +250,7 @@ public class InnovationDB implements Serializable {
      * @param destinationNodeId The destination node of the link
      * @return Id of the new or existing link.
      */
-    public int requestLinkId(int sourceNodeId, int destinationNodeId) {
+    public synchronized int requestLinkId(int sourceNodeId, int destinationNodeId) {
 
         Link newLink = new Link(sourceNodeId, destinationNodeId);
         // Check if the new link is already in use.
@@ -105,7 +277,8 @@ public class InnovationDB implements Serializable {
      * @param genomeNodeIds Node Ids present in the genome in question
      * @return An integer representing the id of the node to add
      */
-    public int requestInterruptingNodeId(int sourceNodeId, int destinationNodeId, Set<Integer> genomeNodeIds) {
+    public synchronized int requestInterruptingNodeId(int sourceNodeId, int destinationNodeId,
+                                                      Set<Integer> genomeNodeIds) {
 
         // The interrupted link
         Link interruptedLink = new Link(sourceNodeId, destinationNodeId);
@@ -142,7 +315,7 @@ public class InnovationDB implements Serializable {
      * Generate a genome id and increase the genomes count
      * @return an integer to be used as an id for a genome
      */
-    public int getNewGenomeId() {
+    public synchronized int getNewGenomeId() {
         return genomeCount++;
     }
 
@@ -150,7 +323,7 @@ public class InnovationDB implements Serializable {
      * Generate a species id and increase the species count
      * @return an integer to be used as an id for a species
      */
-    public int getNewSpeciesId() {
+    public synchronized int getNewSpeciesId() {
         return speciesCount++;
     }
 
@@ -166,8 +339,8 @@ public class InnovationDB implements Serializable {
         return outputNodeIds;
     }
 
-    public Set<Integer> getHiddenNodeIds() {
-        return hiddenNodeIds;
+    public synchronized Set<Integer> getHiddenNodeIds() {
+        return new HashSet<>(hiddenNodeIds); // A snapshot, the set keeps growing during concurrent evolution
     }
 
     public ActivationType getDefaultActivationType() {
@@ -182,11 +355,15 @@ public class InnovationDB implements Serializable {
         return weightRangeMax;
     }
 
-    public int getLinkCount() {
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    public synchronized int getLinkCount() {
         return linkCount;
     }
 
-    public int getSpeciesCount() {
+    public synchronized int getSpeciesCount() {
         return speciesCount;
     }
 }
@@ -0,0 +1,149 @@
+package util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered reader of primitive values from an NIO channel (a file, or an in-memory stream), the counterpart of
+ * BinaryOutput. The channel is read into a ByteBuffer by large blocks, refilled whenever the values requested are not
+ * all buffered.
+ *
+ * A reader can also read directly from a buffer holding the whole content, such as a memory mapped file, in which case
+ * nothing is copied, and views of the content (getBuffer) remain valid after reading past them.
+ *
+ * @author Acemad
+ */
+public class BinaryInput implements Closeable {
+
+    private final ReadableByteChannel channel;              // Null if reading from a buffer holding the whole content
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a reader from the given channel
+     * @param channel The source channel
+     */
+    public BinaryInput(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(1 << 16).flip();
+    }
+
+    /**
+     * Creates a reader from a buffer holding the whole content, from its position to its limit
+     * @param buffer The source buffer
+     */
+    public BinaryInput(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a reader from the given file, memory mapped. The file is read on demand by the OS as its pages are
+     * accessed, instead of being copied upfront. Files too large to be mapped at once are read through a channel
+     *
+     * @param path The path of the file
+     * @return A reader from the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static BinaryInput mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) return fromFile(path);
+            // The mapping remains valid once the channel is closed
+            return new BinaryInput(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Creates a reader from the given file
+     * @param path The path of the file
+     * @return A reader from the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static BinaryInput fromFile(Path path) throws IOException {
+        return new BinaryInput(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Returns the buffer, with at least the given number of bytes remaining, for reading values directly from it
+     *
+     * @param bytes The number of bytes to be read
+     * @return The buffer, positioned where the bytes are to be read
+     * @throws IOException If reading fails, EOFException if the channel ends before
+     */
+    public ByteBuffer require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            if (channel == null) throw new EOFException();
+            if (buffer.capacity() < bytes)
+                buffer = ByteBuffer.allocate(bytes).put(buffer);
+            else
+                buffer.compact();
+            while (buffer.position() < bytes)
+                if (channel.read(buffer) < 0) throw new EOFException();
+            buffer.flip();
+        }
+        return buffer;
+    }
+
+    public byte getByte() throws IOException {
+        return require(1).get();
+    }
+
+    public boolean getBoolean() throws IOException {
+        return getByte() != 0;
+    }
+
+    public int getInt() throws IOException {
+        return require(Integer.BYTES).getInt();
+    }
+
+    public long getLong() throws IOException {
+        return require(Long.BYTES).getLong();
+    }
+
+    public double getDouble() throws IOException {
+        return require(Double.BYTES).getDouble();
+    }
+
+    public int getVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = getByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed variable length int");
+    }
+
+    public byte[] getBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        require(length).get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the given number of bytes as a buffer of its own, and advances past them. When reading from a buffer
+     * holding the whole content, the returned buffer is a view of the content, and nothing is copied
+     *
+     * @param length The number of bytes
+     * @return A buffer holding the bytes, from position 0 to its limit
+     * @throws IOException If reading fails, EOFException if the content ends before
+     */
+    public ByteBuffer getBuffer(int length) throws IOException {
+        if (channel != null) return ByteBuffer.wrap(getBytes(length));
+        if (length < 0 || buffer.remaining() < length) throw new EOFException();
+        ByteBuffer view = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return view;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
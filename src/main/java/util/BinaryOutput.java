@@ -0,0 +1,127 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered writer of primitive values to an NIO channel (a file, or an in-memory stream), used by the binary file
+ * formats. Values are accumulated in a ByteBuffer which is written to the channel whenever full.
+ *
+ * @author Acemad
+ */
+public class BinaryOutput implements Closeable {
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private long written = 0;   // Bytes written to the channel so far
+
+    /**
+     * Creates a writer to the given channel
+     * @param channel The destination channel
+     */
+    public BinaryOutput(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(1 << 16);
+    }
+
+    /**
+     * Creates a writer to the given file, created or truncated
+     * @param path The path of the file
+     * @return A writer to the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static BinaryOutput toFile(Path path) throws IOException {
+        return new BinaryOutput(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Creates a writer appending to the given file, created if it doesn't exist
+     * @param path The path of the file
+     * @return A writer to the end of the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static BinaryOutput appendToFile(Path path) throws IOException {
+        return new BinaryOutput(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Returns the buffer, with at least the given number of bytes remaining, for writing values directly into it
+     *
+     * @param bytes The number of bytes to be written
+     * @return The buffer, positioned where the bytes are to be written
+     * @throws IOException If flushing the buffer fails
+     */
+    public ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(bytes);
+        }
+        return buffer;
+    }
+
+    public void putByte(int value) throws IOException {
+        reserve(1).put((byte) value);
+    }
+
+    public void putBoolean(boolean value) throws IOException {
+        putByte(value ? 1 : 0);
+    }
+
+    public void putInt(int value) throws IOException {
+        reserve(Integer.BYTES).putInt(value);
+    }
+
+    public void putLong(long value) throws IOException {
+        reserve(Long.BYTES).putLong(value);
+    }
+
+    public void putDouble(double value) throws IOException {
+        reserve(Double.BYTES).putDouble(value);
+    }
+
+    public void putVarInt(int value) throws IOException {
+        VarInt.putVarInt(reserve(VarInt.MAX_INT_BYTES), value);
+    }
+
+    public void putBytes(byte[] bytes) throws IOException {
+        reserve(bytes.length).put(bytes);
+    }
+
+    /**
+     * Returns the number of bytes written so far, including the buffered ones
+     */
+    public long position() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Writes the buffered values to the channel
+     * @throws IOException If writing fails
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Flushes the buffered values and closes the channel
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
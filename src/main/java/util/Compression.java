@@ -0,0 +1,71 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Static helpers for compressing blocks of bytes with the deflate algorithm of java.util.zip, such as the body of
+ * checkpoint files. The binary encodings of populations and statistics hold many repeated ids and counts, which
+ * compress well.
+ *
+ * @author Acemad
+ */
+public class Compression {
+
+    /**
+     * Compresses a block of bytes
+     *
+     * @param bytes The array holding the block
+     * @param offset The start of the block in the array
+     * @param length The length of the block
+     * @return The compressed block
+     */
+    public static byte[] deflate(byte[] bytes, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] chunk = new byte[1 << 16];
+            while (!deflater.finished())
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a block compressed by deflate
+     *
+     * @param compressed The compressed block, from its position to its limit
+     * @param length The length of the block once decompressed
+     * @return The decompressed block, from position 0 to length
+     * @throws IOException If the block is corrupted, or doesn't decompress to the given length
+     */
+    public static ByteBuffer inflate(ByteBuffer compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // One byte more than expected, to tell a longer block from a complete one
+            byte[] bytes = new byte[length + 1];
+            int inflated = 0;
+            while (!inflater.finished() && inflated <= length) {
+                int count = inflater.inflate(bytes, inflated, bytes.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished())
+                throw new IOException("Compressed block doesn't match its length");
+            return ByteBuffer.wrap(bytes, 0, length);
+        } catch (DataFormatException exception) {
+            throw new IOException("Corrupted compressed block", exception);
+        } finally {
+            inflater.end();
+        }
+    }
+}
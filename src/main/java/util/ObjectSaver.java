@@ -2,13 +2,13 @@ package util;
 
 import org.apache.commons.math3.stat.inference.WilcoxonSignedRankTest;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * A helper class that contains object saving static methods for Serializable objects.
+ * A helper class that contains object saving static methods for Serializable objects. Objects can be saved
+ * compressed (GZIP), loading detects compressed files by themselves.
  * @author Acemad
  */
 public class ObjectSaver {
@@ -19,8 +19,20 @@ public class ObjectSaver {
      * @param filePath Path of the file where to save the object
      */
     public static void saveObjectToFile(Object object, String filePath) {
+        saveObjectToFile(object, filePath, false);
+    }
+
+    /**
+     * Save a given object to the given path, optionally compressed. Creates the file if it does not exist and
+     * overwrites it if it does.
+     * @param object The object to save
+     * @param filePath Path of the file where to save the object
+     * @param compress Whether to compress the serialized object
+     */
+    public static void saveObjectToFile(Object object, String filePath, boolean compress) {
         try {
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
+            OutputStream fileOutputStream = new BufferedOutputStream(new FileOutputStream(filePath));
+            if (compress) fileOutputStream = new GZIPOutputStream(fileOutputStream);
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
             objectOutputStream.writeObject(object);
             objectOutputStream.flush();
@@ -40,8 +52,8 @@ public class ObjectSaver {
     public static <T> T loadFromFile(String filePath, Class<T> type) {
         T object = null;
         try {
-            FileInputStream fileInputStream = new FileInputStream(filePath);
-            ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);
+            InputStream fileInputStream = new BufferedInputStream(new FileInputStream(filePath));
+            ObjectInputStream objectInputStream = new ObjectInputStream(decompressed(fileInputStream));
             object = type.cast(objectInputStream.readObject());
             objectInputStream.close();
         } catch (Exception exception) {
@@ -50,4 +62,63 @@ public class ObjectSaver {
         return object;
     }
 
+    /**
+     * Serialize a given object to a byte array
+     * @param object The object to serialize
+     * @return The serialized form of the object, null if serialization failed
+     */
+    public static byte[] toBytes(Object object) {
+        return toBytes(object, false);
+    }
+
+    /**
+     * Serialize a given object to a byte array, optionally compressed
+     * @param object The object to serialize
+     * @param compress Whether to compress the serialized object
+     * @return The serialized form of the object, null if serialization failed
+     */
+    public static byte[] toBytes(Object object, boolean compress) {
+        try {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            OutputStream outputStream = compress ? new GZIPOutputStream(byteArrayOutputStream) : byteArrayOutputStream;
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+            objectOutputStream.writeObject(object);
+            objectOutputStream.close();
+            return byteArrayOutputStream.toByteArray();
+        } catch (Exception exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Deserialize an object from a byte array, and cast it to the appropriate type
+     * @param bytes The serialized form of the object
+     * @param type Class<T> representing the type of the object
+     * @param <T> Type of the object to deserialize
+     * @return The actual instance of the serialized object
+     */
+    public static <T> T fromBytes(byte[] bytes, Class<T> type) {
+        T object = null;
+        try {
+            ObjectInputStream objectInputStream = new ObjectInputStream(decompressed(new ByteArrayInputStream(bytes)));
+            object = type.cast(objectInputStream.readObject());
+            objectInputStream.close();
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+        return object;
+    }
+
+    /**
+     * Returns a stream decompressing the given one if it starts with the GZIP magic number, the given stream otherwise
+     * @param inputStream A stream supporting mark and reset
+     */
+    private static InputStream decompressed(InputStream inputStream) throws IOException {
+        inputStream.mark(2);
+        int magic = inputStream.read() | (inputStream.read() << 8);
+        inputStream.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(inputStream) : inputStream;
+    }
+
 }
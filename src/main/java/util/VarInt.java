@@ -0,0 +1,98 @@
+package util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Static helpers for reading and writing variable length integers (LEB128) from/to ByteBuffers. Small non-negative
+ * values, such as innovation ids and counts, take a single byte instead of four.
+ *
+ * @author Acemad
+ */
+public class VarInt {
+
+    /**
+     * The maximum number of bytes taken by an encoded int
+     */
+    public static final int MAX_INT_BYTES = 5;
+
+    /**
+     * Writes an int at the current position of the buffer, 7 bits per byte, least significant bits first. Negative
+     * values are valid but always take 5 bytes.
+     *
+     * @param buffer The buffer to write to
+     * @param value The value to write
+     */
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an int written by putVarInt from the current position of the buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The value read
+     */
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed variable length int");
+    }
+
+    /**
+     * Returns the number of bytes taken by the given value once encoded
+     *
+     * @param value The value to encode
+     * @return The encoded size, between 1 and 5
+     */
+    public static int sizeOf(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a signed int, zigzag encoded (0, -1, 1, -2... map to 0, 1, 2, 3...), so that small negative values, such as
+     * the differences between consecutive ids, take as few bytes as small positive ones
+     *
+     * @param buffer The buffer to write to
+     * @param value The value to write
+     */
+    public static void putSignedVarInt(ByteBuffer buffer, int value) {
+        putVarInt(buffer, zigzag(value));
+    }
+
+    /**
+     * Reads an int written by putSignedVarInt from the current position of the buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The value read
+     */
+    public static int getSignedVarInt(ByteBuffer buffer) {
+        return unzigzag(getVarInt(buffer));
+    }
+
+    /**
+     * Maps a signed int to an unsigned one, small in magnitude values to small values
+     */
+    public static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * The inverse of zigzag
+     */
+    public static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}